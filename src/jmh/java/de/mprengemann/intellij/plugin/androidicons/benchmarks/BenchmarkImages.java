@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import de.mprengemann.intellij.plugin.androidicons.images.ResizeAlgorithm;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * @param size e.g. "48x48"
+     */
+    static BufferedImage createImage(String size) {
+        final String[] dimensions = size.split("x");
+        return createImage(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+    }
+
+    static BufferedImage createImage(int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        final Random random = new Random(42);
+        for (int i = 0; i < 64; i++) {
+            g.setColor(new Color(random.nextInt(), true));
+            final int w = 1 + random.nextInt(Math.max(1, width / 2));
+            final int h = 1 + random.nextInt(Math.max(1, height / 2));
+            g.fillRoundRect(random.nextInt(width), random.nextInt(height), w, h, w / 4, h / 4);
+        }
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Creates a nine-patch with a stretchable center third and a padding box of the same size. The returned image
+     * includes the one pixel border, so it is two pixels larger than the given content size.
+     */
+    static BufferedImage createNinePatch(String size) {
+        final String[] dimensions = size.split("x");
+        final int width = Integer.parseInt(dimensions[0]);
+        final int height = Integer.parseInt(dimensions[1]);
+        final BufferedImage content = createImage(width, height);
+        final BufferedImage ninePatch = new BufferedImage(width + 2, height + 2, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = ninePatch.createGraphics();
+        g.drawImage(content, 1, 1, null);
+        g.dispose();
+        final int black = 0xff000000;
+        for (int x = width / 3; x < 2 * width / 3; x++) {
+            ninePatch.setRGB(x + 1, 0, black);
+            ninePatch.setRGB(x + 1, height + 1, black);
+        }
+        for (int y = height / 3; y < 2 * height / 3; y++) {
+            ninePatch.setRGB(0, y + 1, black);
+            ninePatch.setRGB(width + 1, y + 1, black);
+        }
+        return ninePatch;
+    }
+
+    static File writeTempImage(BufferedImage image, String name) throws IOException {
+        final File file = File.createTempFile(name, ".png");
+        file.deleteOnExit();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    /**
+     * @param algorithmAndMethod e.g. "Scalr/Ultra Quality"
+     */
+    static ImageInformation.Builder newInformation(File imageFile, String algorithmAndMethod) {
+        final String[] parts = algorithmAndMethod.split("/");
+        final ResizeAlgorithm algorithm = ResizeAlgorithm.from(parts[0]);
+        return ImageInformation.newBuilder()
+                               .setImageFile(imageFile)
+                               .setExportPath(imageFile.getParent())
+                               .setAlgorithm(algorithm)
+                               .setMethod(algorithm.getMethod(parts[1]));
+    }
+}
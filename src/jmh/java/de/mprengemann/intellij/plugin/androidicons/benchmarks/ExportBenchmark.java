@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import de.mprengemann.intellij.plugin.androidicons.model.Format;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
+import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
+import de.mprengemann.intellij.plugin.androidicons.util.RefactorUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Encoding cost of the temp files written for every exported density, plus the scale factor lookup done for
+ * every entry of an export.
+ */
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    @Param({"48x48", "192x192", "1024x1024", "3840x2160"})
+    public String size;
+
+    @Param({"PNG", "JPG"})
+    public Format format;
+
+    private BufferedImage image;
+    private ImageInformation information;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = BenchmarkImages.createImage(size);
+        final File imageFile = BenchmarkImages.writeTempImage(image, "benchmark");
+        information = BenchmarkImages.newInformation(imageFile, "Scalr/Automatic")
+                                     .setExportName("benchmark")
+                                     .setTargetResolution(Resolution.XHDPI)
+                                     .setFormat(format)
+                                     .build();
+    }
+
+    @Benchmark
+    public File saveImageTempFile() throws IOException {
+        return ImageUtils.saveImageTempFile(image, information);
+    }
+
+    @Benchmark
+    public void getScaleFactor(Blackhole blackhole) {
+        for (Resolution baseLine : Resolution.nonVectorValues()) {
+            for (Resolution target : Resolution.nonVectorValues()) {
+                blackhole.consume(RefactorUtils.getScaleFactor(target, baseLine));
+            }
+        }
+    }
+}
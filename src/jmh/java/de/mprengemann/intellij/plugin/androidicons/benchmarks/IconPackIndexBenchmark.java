@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackIndex;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of loading the bundled icon packs, from content.json through Gson versus the binary index. Both are
+ * read from memory, so only parsing and object creation are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IconPackIndexBenchmark {
+
+    private byte[] contentJson;
+    private byte[] contentIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final InputStream inputStream = getClass().getResourceAsStream("/assets/" + IconPackIndex.CONTENT_JSON);
+        try {
+            contentJson = IOUtils.toByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IconPackIndex.write(readJson(), outputStream);
+        contentIndex = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public List<IconPack> readJson() {
+        return IconPackIndex.readJson(new InputStreamReader(new ByteArrayInputStream(contentJson)));
+    }
+
+    @Benchmark
+    public List<IconPack> readIndex() throws IOException {
+        return IconPackIndex.read(new ByteArrayInputStream(contentIndex));
+    }
+}
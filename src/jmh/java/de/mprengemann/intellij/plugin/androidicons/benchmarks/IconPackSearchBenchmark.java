@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackSearchIndex;
+import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asset search of the icon importers, the search index of the material icons versus matching every asset name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IconPackSearchBenchmark {
+
+    @Param({"ar", "search", "serach", "arrow back"})
+    public String query;
+
+    private List<ImageAsset> assets;
+    private IconPackSearchIndex searchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final InputStream inputStream = getClass().getResourceAsStream("/assets/" + IconPackIndex.CONTENT_INDEX);
+        try {
+            final List<IconPack> iconPacks = IconPackIndex.read(inputStream);
+            assets = iconPacks.get(1).getAssets();
+        } finally {
+            inputStream.close();
+        }
+        searchIndex = new IconPackSearchIndex(assets);
+    }
+
+    @Benchmark
+    public List<ImageAsset> search() {
+        return searchIndex.search(query);
+    }
+
+    @Benchmark
+    public List<ImageAsset> scan() {
+        final List<ImageAsset> result = new ArrayList<ImageAsset>();
+        for (ImageAsset asset : assets) {
+            if (asset.getName().contains(query)) {
+                result.add(asset);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ui.UIUtil;
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The image based nine-patch border scaling which was used before
+ * {@link de.mprengemann.intellij.plugin.androidicons.util.NinePatchBorders}, kept as a baseline.
+ */
+final class LegacyNinePatchBorders {
+
+    private LegacyNinePatchBorders() {
+    }
+
+    private static void enforceBorderColors(BufferedImage inputImage) {
+        Graphics2D g = inputImage.createGraphics();
+        g.setBackground(new Color(0, 0, 0, 0));
+        g.clearRect(1, 1, inputImage.getWidth() - 2, inputImage.getHeight() - 2);
+        g.dispose();
+        int w = inputImage.getWidth();
+        int h = inputImage.getHeight();
+        int[] rgb = new int[w * h];
+
+        inputImage.getRGB(0, 0, w, h, rgb, 0, w);
+
+        for (int i = 0; i < rgb.length; i++) {
+            if ((0xff000000 & rgb[i]) != 0) {
+                rgb[i] = 0xff000000;
+            }
+        }
+        inputImage.setRGB(0, 0, w, h, rgb, 0, w);
+    }
+
+    static BufferedImage generateBordersImage(BufferedImage source,
+                                              int trimmedWidth,
+                                              int trimmedHeight) throws IOException {
+        BufferedImage finalBorder = UIUtil.createImage(trimmedWidth + 2,
+                                                       trimmedHeight + 2,
+                                                       BufferedImage.TYPE_INT_ARGB);
+        int cutW = source.getWidth() - 2;
+        int cutH = source.getHeight() - 2;
+
+        // left border
+        BufferedImage leftBorder = UIUtil.createImage(1, cutH, BufferedImage.TYPE_INT_ARGB);
+        leftBorder.setRGB(0, 0, 1, cutH,
+                          source.getRGB(0, 1, 1, cutH, null, 0, 1), 0, 1);
+        verifyBorderImage(leftBorder);
+        leftBorder = resizeBorder(leftBorder, 1, trimmedHeight);
+        finalBorder.setRGB(0, 1, 1, trimmedHeight,
+                           leftBorder.getRGB(0, 0, 1, trimmedHeight, null, 0, 1), 0, 1);
+
+        // right border
+        BufferedImage rightBorder = UIUtil.createImage(1, cutH, BufferedImage.TYPE_INT_ARGB);
+        rightBorder.setRGB(0, 0, 1, cutH,
+                           source.getRGB(cutW + 1, 1, 1, cutH, null, 0, 1), 0, 1);
+        verifyBorderImage(rightBorder);
+        rightBorder = resizeBorder(rightBorder, 1, trimmedHeight);
+        finalBorder.setRGB(trimmedWidth + 1, 1, 1, trimmedHeight, rightBorder
+            .getRGB(0, 0, 1, trimmedHeight, null, 0, 1), 0, 1);
+
+        // top border
+        BufferedImage topBorder = UIUtil.createImage(cutW, 1, BufferedImage.TYPE_INT_ARGB);
+        topBorder.setRGB(0, 0, cutW, 1,
+                         source.getRGB(1, 0, cutW, 1, null, 0, cutW), 0, cutW);
+        verifyBorderImage(topBorder);
+        topBorder = resizeBorder(topBorder, trimmedWidth, 1);
+        finalBorder.setRGB(1,
+                           0,
+                           trimmedWidth,
+                           1,
+                           topBorder.getRGB(0, 0,
+                                            trimmedWidth, 1, null, 0, trimmedWidth),
+                           0,
+                           trimmedWidth);
+
+        // bottom border
+        BufferedImage bottomBorder = UIUtil.createImage(cutW, 1, BufferedImage.TYPE_INT_ARGB);
+        bottomBorder.setRGB(0, 0, cutW, 1,
+                            source.getRGB(1, cutH + 1, cutW, 1, null, 0, cutW),
+                            0, cutW);
+        verifyBorderImage(bottomBorder);
+        bottomBorder = resizeBorder(bottomBorder, trimmedWidth, 1);
+        finalBorder.setRGB(1, trimmedHeight + 1, trimmedWidth, 1,
+                           bottomBorder.getRGB(0, 0, trimmedWidth, 1, null, 0,
+                                               trimmedWidth), 0, trimmedWidth);
+
+        return finalBorder;
+    }
+
+    private static BufferedImage resizeBorder(final BufferedImage border,
+                                              int targetWidth,
+                                              int targetHeight) throws IOException {
+        if (targetWidth > border.getWidth()
+            || targetHeight > border.getHeight()) {
+            BufferedImage endImage = rescaleBorder(border, targetWidth, targetHeight);
+            enforceBorderColors(endImage);
+            return endImage;
+        }
+
+        int w = border.getWidth();
+        int h = border.getHeight();
+        int[] data = border.getRGB(0, 0, w, h, null, 0, w);
+        int[] newData = new int[targetWidth * targetHeight];
+
+        float widthRatio = (float) Math.max(targetWidth - 1, 1) / (float) Math.max(w - 1, 1);
+        float heightRatio = (float) Math.max(targetHeight - 1, 1) / (float) Math.max(h - 1, 1);
+
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if ((0xff000000 & data[y * w + x]) != 0) {
+                    int newX = Math.min(Math.round(x * widthRatio), targetWidth - 1);
+                    int newY = Math.min(Math.round(y * heightRatio), targetHeight - 1);
+                    newData[newY * targetWidth + newX] = data[y * w + x];
+                }
+            }
+        }
+
+        BufferedImage img = UIUtil.createImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
+        img.setRGB(0, 0, targetWidth, targetHeight, newData, 0, targetWidth);
+
+        return img;
+    }
+
+    private static void verifyBorderImage(BufferedImage border) throws IOException {
+        int[] rgb = border.getRGB(0, 0, border.getWidth(), border.getHeight(),
+                                  null, 0, border.getWidth());
+        for (int aRgb : rgb) {
+            if ((0xff000000 & aRgb) != 0) {
+                if (aRgb != 0xff000000 && aRgb != 0xffff0000) {
+                    throw new IOException();
+                }
+            }
+        }
+    }
+
+    private static BufferedImage rescaleBorder(BufferedImage image, int targetWidth, int targetHeight) throws IOException {
+        if (targetWidth == 0) {
+            targetWidth = 1;
+        }
+        if (targetHeight == 0) {
+            targetHeight = 1;
+        }
+
+        if (targetHeight > 1 && targetWidth > 1) {
+            throw new IOException();
+        }
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[] data = image.getRGB(0, 0, w, h, null, 0, w);
+        int[] newData = new int[targetWidth * targetHeight];
+
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                newData[y * targetWidth + x] = 0x00;
+            }
+        }
+
+        List<Integer> startPositions = new ArrayList<Integer>();
+        List<Integer> endPositions = new ArrayList<Integer>();
+
+        boolean inBlock = false;
+        if (targetHeight == 1) {
+            for (int x = 0; x < w; x++) {
+                if ((0xff000000 & data[x]) != 0) {
+                    if (!inBlock) {
+                        inBlock = true;
+                        startPositions.add(x);
+                    }
+                } else if (inBlock) {
+                    endPositions.add(x - 1);
+                    inBlock = false;
+                }
+            }
+            if (inBlock) {
+                endPositions.add(w - 1);
+            }
+        } else {
+            for (int y = 0; y < h; y++) {
+                if ((0xff000000 & data[y]) != 0) {
+                    if (!inBlock) {
+                        inBlock = true;
+                        startPositions.add(y);
+                    }
+                } else if (inBlock) {
+                    endPositions.add(y - 1);
+                    inBlock = false;
+                }
+            }
+            if (inBlock) {
+                endPositions.add(h - 1);
+            }
+        }
+        try {
+            SplineInterpolator interpolator = new SplineInterpolator();
+            PolynomialSplineFunction function =
+                interpolator.interpolate(new double[] {0f, 1f, Math.max(w - 1, h - 1)},
+                                         new double[] {0f, 1f, Math.max(targetHeight - 1, targetWidth - 1)});
+            for (int i = 0; i < startPositions.size(); i++) {
+                int start = startPositions.get(i);
+                int end = endPositions.get(i);
+                for (int j = (int) function.value(start); j <= (int) function.value(end); j++) {
+                    newData[j] = 0xff000000;
+                }
+            }
+
+            BufferedImage img = UIUtil.createImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
+            img.setRGB(0, 0, targetWidth, targetHeight, newData, 0, targetWidth);
+            return img;
+        } catch (Exception e) {
+            Logger.getInstance(LegacyNinePatchBorders.class).error("resizeBorder", e);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import de.mprengemann.intellij.plugin.androidicons.util.NinePatchBorders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Border scaling of large nine-patches, comparing the primitive border engine with the former image based
+ * implementation. Run with the gc profiler (the default) to compare gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+public class NinePatchBorderBenchmark {
+
+    @Param({"1024x1024", "3840x2160"})
+    public String size;
+
+    @Param({"0.5", "1.5"})
+    public float factor;
+
+    private BufferedImage ninePatch;
+    private int trimmedWidth;
+    private int trimmedHeight;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ninePatch = BenchmarkImages.createNinePatch(size);
+        trimmedWidth = Math.round((ninePatch.getWidth() - 2) * factor);
+        trimmedHeight = Math.round((ninePatch.getHeight() - 2) * factor);
+    }
+
+    @Benchmark
+    public BufferedImage borders() throws IOException {
+        return NinePatchBorders.createBorderImage(ninePatch, trimmedWidth, trimmedHeight);
+    }
+
+    @Benchmark
+    public BufferedImage legacyBorders() throws IOException {
+        return LegacyNinePatchBorders.generateBordersImage(ninePatch, trimmedWidth, trimmedHeight);
+    }
+}
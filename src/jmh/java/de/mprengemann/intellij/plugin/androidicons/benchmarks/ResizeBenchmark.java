@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.benchmarks;
+
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
+import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
+import de.mprengemann.intellij.plugin.androidicons.util.RefactorUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resize cost of every algorithm / method combination, from launcher icons up to 4K splash screens. The sources are
+ * exported from XXXHDPI to the usual density set, matching what the batch importer does.
+ */
+@State(Scope.Benchmark)
+public class ResizeBenchmark {
+
+    private static final Resolution SOURCE_RESOLUTION = Resolution.XXXHDPI;
+    private static final Resolution[] TARGET_RESOLUTIONS = new Resolution[] {
+        Resolution.XXHDPI, Resolution.XHDPI, Resolution.HDPI, Resolution.MDPI, Resolution.LDPI
+    };
+
+    @Param({"48x48", "192x192", "1024x1024", "3840x2160"})
+    public String size;
+
+    @Param({"Scalr/Automatic",
+            "Scalr/Speed",
+            "Scalr/Balanced",
+            "Scalr/Quality",
+            "Scalr/Ultra Quality",
+            "Thumbnailator/Default",
+            "Scalr (Cascaded)/Quality"})
+    public String algorithm;
+
+    private BufferedImage image;
+    private BufferedImage ninePatch;
+    private ImageInformation information;
+    private ImageInformation ninePatchInformation;
+    private List<ImageInformation> densityChain;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        image = BenchmarkImages.createImage(size);
+        ninePatch = BenchmarkImages.createNinePatch(size);
+        final File imageFile = BenchmarkImages.writeTempImage(image, "benchmark");
+        final File ninePatchFile = BenchmarkImages.writeTempImage(ninePatch, "benchmark.9");
+
+        final float factor = RefactorUtils.getScaleFactor(Resolution.XHDPI, SOURCE_RESOLUTION);
+        information = BenchmarkImages.newInformation(imageFile, algorithm)
+                                     .setExportName("benchmark")
+                                     .setTargetResolution(Resolution.XHDPI)
+                                     .setFactor(factor)
+                                     .build();
+        ninePatchInformation = BenchmarkImages.newInformation(ninePatchFile, algorithm)
+                                              .setExportName("benchmark.9")
+                                              .setNinePatch(true)
+                                              .setTargetResolution(Resolution.XHDPI)
+                                              .setFactor(factor)
+                                              .build();
+        densityChain = new ArrayList<ImageInformation>();
+        for (Resolution resolution : TARGET_RESOLUTIONS) {
+            densityChain.add(ImageInformation.newBuilder(information)
+                                             .setTargetResolution(resolution)
+                                             .setFactor(RefactorUtils.getScaleFactor(resolution, SOURCE_RESOLUTION))
+                                             .build());
+        }
+    }
+
+    @Benchmark
+    public BufferedImage resizeNormalImage() throws IOException {
+        return ImageUtils.resizeNormalImage(image, information);
+    }
+
+    @Benchmark
+    public BufferedImage resizeNormalImageWithDecode() throws IOException {
+        return ImageUtils.resizeNormalImage(information);
+    }
+
+    @Benchmark
+    public BufferedImage resizeNinePatchImage() throws IOException {
+        return ImageUtils.resizeNinePatchImage(ninePatch, ninePatchInformation);
+    }
+
+    @Benchmark
+    public List<BufferedImage> resizeDensityChainDirect() throws IOException {
+        final List<BufferedImage> images = new ArrayList<BufferedImage>(densityChain.size());
+        for (ImageInformation imageInformation : densityChain) {
+            images.add(ImageUtils.resizeNormalImage(image, imageInformation));
+        }
+        return images;
+    }
+
+    @Benchmark
+    public List<BufferedImage> resizeDensityChainCascaded() throws IOException {
+        return ImageUtils.resizeCascade(image, densityChain);
+    }
+}
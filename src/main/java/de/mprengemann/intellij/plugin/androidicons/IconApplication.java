@@ -1,17 +1,21 @@
 package de.mprengemann.intellij.plugin.androidicons;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import com.intellij.openapi.components.ApplicationComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
-import com.intellij.util.io.ZipUtil;
+import com.intellij.openapi.project.Project;
 import de.mprengemann.intellij.plugin.androidicons.controllers.DefaultControllerFactory;
 import de.mprengemann.intellij.plugin.androidicons.controllers.IControllerFactory;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IIconPackController;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.ThumbnailAtlas;
 import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
-import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackArchive;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackIndex;
 import de.mprengemann.intellij.plugin.androidicons.resources.ResourceLoader;
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
@@ -19,95 +23,260 @@ import org.jetbrains.annotations.NotNull;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
 import static java.lang.String.format;
 
-public class IconApplication implements ApplicationComponent {
+/**
+ * Application service holding the bundled icon packs. Nothing is loaded at IDE startup or when a project is opened;
+ * the packs are parsed on first use of an icon pack importer and, after a version change, updated in the background.
+ * The images themselves are read from the icon pack archive in place.
+ */
+public class IconApplication implements Disposable {
 
     private static final String TAG = IconApplication.class.getSimpleName();
     private static final Logger LOGGER = Logger.getInstance(TAG);
-    private IControllerFactory controllerFactory;
+    private static final String PREPARE_TITLE = "Prepare Android Drawable Importer";
+    private static final String ICON_PACK_PROPERTIES = "icon_packs.properties";
 
+    private final Object prepareLock = new Object();
+    private final Object factoryLock = new Object();
+    private volatile IControllerFactory controllerFactory;
+    private volatile boolean prepared;
+    private Project project;
+
+    public static IconApplication getInstance() {
+        return ServiceManager.getService(IconApplication.class);
+    }
+
+    public boolean isPrepared() {
+        return prepared;
+    }
+
+    /**
+     * Returns the controller factory. Its icon pack controllers are only available after {@link #prepareIconPacks()}.
+     */
     @NotNull
-    @Override
-    public String getComponentName() {
-        return getClass().getName();
+    public IControllerFactory getControllerFactory() {
+        IControllerFactory factory = controllerFactory;
+        if (factory == null) {
+            synchronized (factoryLock) {
+                factory = controllerFactory;
+                if (factory == null) {
+                    factory = new DefaultControllerFactory();
+                    factory.setProject(project);
+                    controllerFactory = factory;
+                }
+            }
+        }
+        return factory;
     }
 
-    @Override
-    public void initComponent() {
-        IconPack androidIcons = null;
-        IconPack materialIcons = null;
-        try {
-            // Instantiate the bundled IconPacks to be passed to the DefaultControllerFactory
-            // This reads "content.json" and ALWAYS gets done.
-            final BufferedReader fileReader = ResourceLoader.getBundledResReader("content.json");
-            assert fileReader != null;
-            final Type listType = new TypeToken<ArrayList<IconPack>>() {}.getType();
-            GsonBuilder gsonBuilder = new GsonBuilder();
-            gsonBuilder.registerTypeAdapter(Resolution.class, new Resolution.Deserializer());
-            final Gson gson = gsonBuilder.create();
-            final List<IconPack> iconPacks = gson.fromJson(fileReader, listType);
-            androidIcons = iconPacks.get(0);    LOGGER.info(format("%d androidIcons", androidIcons.getAssets().size()));
-            materialIcons = iconPacks.get(1);   LOGGER.info(format("%d materialIcons", materialIcons.getAssets().size()));
-
-            // Get the bundled property file (/assets) ...
-            String propFn = "icon_packs.properties";
-            Properties bundledIconPackProperties = new Properties();
-            bundledIconPackProperties.load(ResourceLoader.getBundledResourceStream(propFn));
-            // ... and compare 'version' with the local property file (/)
-            boolean export;
-            File propFile = new File(ResourceLoader.getExportPath(), propFn);
-            // NB: Above line may create /home/[userId]/.AndroidStudio3.6/system/ADI-hack-export
-            LOGGER.info(format("propFile.exists()=%b\n%s", propFile.exists(), propFile.getAbsolutePath()));
-            if (!propFile.exists()) {
-                export = true;
+    /**
+     * Loads the icon packs if this is their first use. Called from the EDT the loading runs under a cancelable modal
+     * progress.
+     *
+     * @return false if the loading was cancelled or failed, it is tried again on the next call then
+     */
+    public boolean prepareIconPacks() {
+        if (!prepared) {
+            if (ApplicationManager.getApplication().isDispatchThread()) {
+                final Runnable prepare = new Runnable() {
+                    @Override
+                    public void run() {
+                        prepare();
+                    }
+                };
+                final boolean completed = ProgressManager.getInstance()
+                                                         .runProcessWithProgressSynchronously(prepare,
+                                                                                              PREPARE_TITLE,
+                                                                                              true,
+                                                                                              project);
+                if (!completed) {
+                    LOGGER.info("Loading the icon packs was cancelled");
+                    return false;
+                }
             } else {
-                Properties localIconPackProperties = new Properties();
-                localIconPackProperties.load(FileUtils.openInputStream(propFile));
-                export = Integer.parseInt(bundledIconPackProperties.getProperty("version")) !=
-                         Integer.parseInt(localIconPackProperties.getProperty("version"));
+                prepare();
             }
+        }
+        return prepared;
+    }
 
-            if (export) {
-                LOGGER.info("Preparing Android Drawable Importer");
-                new Task.Modal(null, "Prepare Android Drawable Importer", false) {
-                    @Override
-                    public void run(@NotNull ProgressIndicator progressIndicator) {
-                        progressIndicator.setIndeterminate(true);
-
-                        // Extract the property file from the jar
-                        final File localProp = ResourceLoader.getFromJar(propFn);
-                        assert localProp != null;
-
-                        // "icon_packs.zip" contains: android_icons, material_icons, __MACOSX
-                        final File tempIconZip = ResourceLoader.getFromJar("icon_packs.zip");
-                        assert tempIconZip != null;
-                        try { ZipUtil.extract(tempIconZip, ResourceLoader.getExportPath(), null, true); }
-                        catch (IOException e) { LOGGER.error(e); }
-                        tempIconZip.delete();       // No longer required
-                        LOGGER.info("Icon packs prepared. Android Drawable Importer installed.");
+    public void setProject(Project project) {
+        synchronized (factoryLock) {
+            this.project = project;
+            if (controllerFactory != null) {
+                controllerFactory.setProject(project);
+            }
+        }
+    }
+
+    private void prepare() {
+        synchronized (prepareLock) {
+            if (prepared) {
+                return;
+            }
+            final long start = System.currentTimeMillis();
+            final IconPack androidIcons;
+            final IconPack materialIcons;
+            final boolean exportRequired;
+            try {
+                // Instantiate the bundled IconPacks to be passed to the DefaultControllerFactory
+                // This reads the binary "content.idx" (or "content.json" as fallback).
+                final List<IconPack> iconPacks = loadIconPacks();
+                // Nothing is kept if the user gave up waiting, the next importer loads the packs again
+                ProgressManager.checkCanceled();
+                androidIcons = iconPacks.get(0);    LOGGER.info(format("%d androidIcons", androidIcons.getAssets().size()));
+                materialIcons = iconPacks.get(1);   LOGGER.info(format("%d materialIcons", materialIcons.getAssets().size()));
+                exportRequired = isExportRequired() || IconPackArchive.isNestedArchiveCopyRequired();
+            } catch (ProcessCanceledException e) {
+                throw e;
+            } catch (Exception e) {
+                // Not prepared, the next importer tries again
+                LOGGER.error(e);
+                return;
+            }
+
+            final IControllerFactory factory = getControllerFactory();
+            factory.setIconPacks(androidIcons, materialIcons);
+            prepared = true;
+            LOGGER.info(format("Icon packs loaded in %d ms", System.currentTimeMillis() - start));
+            if (exportRequired ||
+                !ThumbnailAtlas.exists(factory.getAndroidIconsController()) ||
+                !ThumbnailAtlas.exists(factory.getMaterialIconsController())) {
+                updateIconPacks(exportRequired, androidIcons, materialIcons);
+            }
+        }
+    }
+
+    private static boolean isExportRequired() throws IOException {
+        // Get the bundled property file (/assets) ...
+        Properties bundledIconPackProperties = new Properties();
+        bundledIconPackProperties.load(ResourceLoader.getBundledResourceStream(ICON_PACK_PROPERTIES));
+        // ... and compare 'version' with the local property file (/)
+        File propFile = new File(ResourceLoader.getExportPath(), ICON_PACK_PROPERTIES);
+        // NB: Above line may create /home/[userId]/.AndroidStudio3.6/system/ADI-hack-export
+        LOGGER.info(format("propFile.exists()=%b\n%s", propFile.exists(), propFile.getAbsolutePath()));
+        if (!propFile.exists()) {
+            return true;
+        }
+        Properties localIconPackProperties = new Properties();
+        final InputStream localStream = FileUtils.openInputStream(propFile);
+        try {
+            localIconPackProperties.load(localStream);
+        } finally {
+            localStream.close();
+        }
+        return Integer.parseInt(bundledIconPackProperties.getProperty("version")) !=
+               Integer.parseInt(localIconPackProperties.getProperty("version"));
+    }
+
+    /**
+     * Updates the icon packs after a version change and packs the thumbnail atlases which are outdated or missing.
+     */
+    private void updateIconPacks(final boolean exportRequired, final IconPack... iconPacks) {
+        LOGGER.info("Updating icon packs of Android Drawable Importer");
+        new Task.Backgroundable(project, "Update Android Drawable Importer icon packs", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                final List<String> roots = new ArrayList<String>();
+                for (IconPack iconPack : iconPacks) {
+                    if (iconPack != null) {
+                        roots.add(iconPack.getPath());
                     }
-                }.queue();
+                }
+                progressIndicator.setIndeterminate(true);
+                if (exportRequired) {
+                    progressIndicator.setText("Updating icons");
+                    try {
+                        IconPackArchive.copyNestedArchive();
+                    } catch (IOException e) {
+                        LOGGER.error(e);
+                        return;
+                    }
+                    deleteExtractedEntries(roots);
+                }
+
+                // Pack the thumbnails of the icons for the asset lists
+                progressIndicator.checkCanceled();
+                progressIndicator.setText("Packing thumbnails");
+                final IControllerFactory factory = controllerFactory;
+                if (factory == null) {
+                    return;
+                }
+                packThumbnails(factory.getAndroidIconsController(), exportRequired);
+                progressIndicator.checkCanceled();
+                packThumbnails(factory.getMaterialIconsController(), exportRequired);
+                if (!exportRequired) {
+                    return;
+                }
+
+                // Extract the property file from the jar last, so a cancelled update is resumed on the next start
+                final File localProp = ResourceLoader.getFromJar(ICON_PACK_PROPERTIES);
+                assert localProp != null;
+                LOGGER.info("Icon packs updated. Android Drawable Importer installed.");
             }
-        } catch (Exception e) {
-            LOGGER.error(e);
+        }.queue();
+    }
+
+    private static void packThumbnails(IIconPackController controller, boolean force) {
+        if (force || !ThumbnailAtlas.exists(controller)) {
+            ThumbnailAtlas.build(controller);
+            controller.reloadThumbnails();
         }
+    }
 
-        controllerFactory = new DefaultControllerFactory(androidIcons, materialIcons);
+    /**
+     * Previous versions extracted every icon pack image to the export folder, the images are read from the archive
+     * now. Only files directly inside a pack folder, like the thumbnail atlas, are kept.
+     */
+    private static void deleteExtractedEntries(List<String> roots) {
+        for (String root : roots) {
+            final File[] files = ResourceLoader.getAssetResource(root).listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+        FileUtils.deleteQuietly(ResourceLoader.getAssetResource("__MACOSX"));
     }
 
-    @Override
-    public void disposeComponent() {
-        controllerFactory.tearDown();
-        controllerFactory = null;
+    private static List<IconPack> loadIconPacks() throws IOException {
+        final InputStream indexStream = ResourceLoader.getBundledResourceStream(IconPackIndex.CONTENT_INDEX);
+        if (indexStream != null) {
+            try {
+                return IconPackIndex.read(indexStream);
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            }
+        }
+        final BufferedReader fileReader = ResourceLoader.getBundledResReader(IconPackIndex.CONTENT_JSON);
+        assert fileReader != null;
+        try {
+            return IconPackIndex.readJson(fileReader);
+        } finally {
+            fileReader.close();
+        }
     }
 
-    public IControllerFactory getControllerFactory() {
-        return controllerFactory;
+    @Override
+    public void dispose() {
+        synchronized (factoryLock) {
+            if (controllerFactory != null) {
+                controllerFactory.tearDown();
+                controllerFactory = null;
+            }
+            prepared = false;
+            project = null;
+        }
+        IconPackArchive.release();
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,7 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DataKeys;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import de.mprengemann.intellij.plugin.androidicons.IconApplication;
 import de.mprengemann.intellij.plugin.androidicons.dialogs.IconImporter;
 import de.mprengemann.intellij.plugin.androidicons.util.AndroidFacetUtils;
 import icons.AndroidIcons;
@@ -35,6 +36,9 @@ public class IconsAction extends AnAction {
     public void actionPerformed(@NotNull AnActionEvent event) {
         Project project = getEventProject(event);
         Module module = event.getData(DataKeys.MODULE);
+        if (!IconApplication.getInstance().prepareIconPacks()) {
+            return;
+        }
 
         final IconImporter dialog = new IconImporter(project, module);
         dialog.show();
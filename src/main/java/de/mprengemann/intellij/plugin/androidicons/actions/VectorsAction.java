@@ -18,6 +18,7 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DataKeys;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import de.mprengemann.intellij.plugin.androidicons.IconApplication;
 import de.mprengemann.intellij.plugin.androidicons.dialogs.VectorImporter;
 import de.mprengemann.intellij.plugin.androidicons.util.AndroidFacetUtils;
 import icons.AndroidIcons;
@@ -35,6 +36,9 @@ public class VectorsAction extends AnAction {
     public void actionPerformed(@NotNull AnActionEvent event) {
         Project project = getEventProject(event);
         Module module = event.getData(DataKeys.MODULE);
+        if (!IconApplication.getInstance().prepareIconPacks()) {
+            return;
+        }
 
         final VectorImporter dialog = new VectorImporter(project, module);
         dialog.show();
@@ -20,10 +20,11 @@ public class DefaultControllerFactory implements IControllerFactory {
     private ISettingsController settingsController;
     private IIconsImporterController iconImporterController;
 
-    public DefaultControllerFactory(IconPack androidIcons,
-                                    IconPack materialIcons) {
-            androidIconsController = new AndroidIconsController(androidIcons);
-            materialIconsController = new MaterialIconsController(materialIcons);
+    @Override
+    public void setIconPacks(IconPack androidIcons, IconPack materialIcons) {
+        tearDownIconPackControllers();
+        androidIconsController = new AndroidIconsController(androidIcons);
+        materialIconsController = new MaterialIconsController(materialIcons);
     }
 
     @Override
@@ -63,15 +64,7 @@ public class DefaultControllerFactory implements IControllerFactory {
 
     @Override
     public void tearDown() {
-        if (materialIconsController != null) {
-            materialIconsController.tearDown();
-            materialIconsController = null;
-        }
-
-        if (androidIconsController != null) {
-            androidIconsController.tearDown();
-            androidIconsController = null;
-        }
+        tearDownIconPackControllers();
 
         if (defaultsController != null) {
             defaultsController.tearDown();
@@ -88,4 +81,16 @@ public class DefaultControllerFactory implements IControllerFactory {
             iconImporterController = null;
         }
     }
+
+    private void tearDownIconPackControllers() {
+        if (materialIconsController != null) {
+            materialIconsController.tearDown();
+            materialIconsController = null;
+        }
+
+        if (androidIconsController != null) {
+            androidIconsController.tearDown();
+            androidIconsController = null;
+        }
+    }
 }
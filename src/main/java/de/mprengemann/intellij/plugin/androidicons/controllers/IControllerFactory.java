@@ -5,11 +5,17 @@ import de.mprengemann.intellij.plugin.androidicons.controllers.defaults.IDefault
 import de.mprengemann.intellij.plugin.androidicons.controllers.icons.androidicons.IAndroidIconsController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.icons.materialicons.IMaterialIconsController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.settings.ISettingsController;
+import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
 
 public interface IControllerFactory {
 
     void setProject(Project project);
 
+    /**
+     * Creates the icon pack controllers, which are null until then.
+     */
+    void setIconPacks(IconPack androidIcons, IconPack materialIcons);
+
     IAndroidIconsController getAndroidIconsController();
 
     IMaterialIconsController getMaterialIconsController();
@@ -163,6 +163,7 @@ public class BatchScaleImporterController implements IBatchScaleImporterControll
     @Override
     public RefactoringTask getExportTask(Project project) {
         RefactoringTask task = new RefactoringTask(project);
+        task.setDirectWrite(true);
         for (String sourceFile : sourceFiles) {
             final List<ImageInformation> informationList = images.get(sourceFile);
             for (ImageInformation imageInformation : informationList) {
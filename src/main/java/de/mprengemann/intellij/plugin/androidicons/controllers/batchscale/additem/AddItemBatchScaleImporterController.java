@@ -10,10 +10,10 @@ import de.mprengemann.intellij.plugin.androidicons.model.Format;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 import de.mprengemann.intellij.plugin.androidicons.util.ExportNameUtils;
+import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
 import de.mprengemann.intellij.plugin.androidicons.util.RefactorUtils;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -83,12 +83,12 @@ public class AddItemBatchScaleImporterController implements IAddItemBatchScaleIm
     private void init(File file) {
         try {
             LOGGER.info(String.format("Adding file %s", file));
-            BufferedImage image = ImageIO.read(file);
+            final Dimension dimension = ImageUtils.readDimension(file);
             imageFile = file;
-            originalImageWidth = image.getWidth();
-            targetWidth = image.getWidth();
-            targetHeight = image.getHeight();
-            aspectRatio = (float) image.getHeight() / (float) originalImageWidth;
+            originalImageWidth = dimension.width;
+            targetWidth = dimension.width;
+            targetHeight = dimension.height;
+            aspectRatio = (float) dimension.height / (float) originalImageWidth;
         } catch (Exception e) {
             LOGGER.error(e);
         }
@@ -8,7 +8,7 @@ import de.mprengemann.intellij.plugin.androidicons.model.Format;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 
-import java.io.File;
+import javax.swing.Icon;
 import java.util.List;
 import java.util.Set;
 
@@ -21,25 +21,37 @@ public interface IIconsImporterController extends IController<IconsImporterObser
 
     void setSelectedAsset(ImageAsset asset);
 
+    /**
+     * Selects several assets for a bulk export. The selected asset stays the one shown, if it's part of the list.
+     */
+    void setSelectedAssets(List<ImageAsset> assets);
+
     void setSelectedSize(String size);
 
+    void setSelectedSizes(List<String> sizes);
+
     void setSelectedColor(String color);
 
+    void setSelectedColors(List<String> colors);
+
     void setExportName(String exportName);
 
     String getExportName();
 
     String getExportRoot();
 
-    File getImageFile(ImageAsset asset, String color, Resolution resolution);
-
-    File getThumbnailFile(ImageAsset asset);
+    Icon getThumbnail(ImageAsset asset);
 
-    File getSelectedImageFile();
+    /**
+     * @return the path of the selected image in the icon pack archive, see {@link IIconPackController#getImagePath}
+     */
+    String getSelectedImagePath();
 
     ImageAsset getSelectedAsset();
 
-    File getSelectedImageFile(Resolution resolution);
+    List<ImageAsset> getSelectedAssets();
+
+    String getSelectedImagePath(Resolution resolution);
 
     List<String> getCategories();
 
@@ -53,6 +65,16 @@ public interface IIconsImporterController extends IController<IconsImporterObser
 
     String getSelectedColor();
 
+    List<String> getSelectedSizes();
+
+    List<String> getSelectedColors();
+
+    /**
+     * @return whether {@link #getTask(Project)} exports every combination of the selected assets, colors and sizes
+     * instead of the selected asset only
+     */
+    boolean isBulkSelection();
+
     IIconPackController getSelectedIconPack();
 
     String getSelectedCategory();
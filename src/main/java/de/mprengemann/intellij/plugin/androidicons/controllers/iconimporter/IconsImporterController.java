@@ -1,5 +1,6 @@
 package de.mprengemann.intellij.plugin.androidicons.controllers.iconimporter;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.jgoodies.common.base.Objects;
 import de.mprengemann.intellij.plugin.androidicons.controllers.defaults.IDefaultsController;
@@ -14,22 +15,31 @@ import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 import de.mprengemann.intellij.plugin.androidicons.util.RefactorUtils;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
+import javax.swing.Icon;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class IconsImporterController implements IIconsImporterController {
 
+    private static final String TAG = IconsImporterController.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+
     private final Set<IconsImporterObserver> observerSet;
     private final IAndroidIconsController androidIconsController;
     private final IMaterialIconsController materialIconsController;
 
     private Set<Resolution> exportResolutions;
     private ImageAsset selectedAsset;
+    private List<ImageAsset> selectedAssets;
     private String selectedSize;
     private String selectedColor;
+    private List<String> selectedSizes = Collections.emptyList();
+    private List<String> selectedColors = Collections.emptyList();
     private Format format;
     private String exportName;
     private String exportRoot;
@@ -108,8 +118,7 @@ public class IconsImporterController implements IIconsImporterController {
         }
         final IIconPackController controller = getControllerForIconPackId(iconPack);
         final String category = controller.getCategories().get(0);
-        selectedAsset = controller.getAssets(category).get(0);
-        updateColorAndSize();
+        selectAsset(controller.getAssets(category).get(0));
         notifyUpdated();
     }
 
@@ -132,16 +141,33 @@ public class IconsImporterController implements IIconsImporterController {
         if (selectedAsset.getCategory().equals(category)) {
             return;
         }
-        selectedAsset = materialIconsController.getAssets(category).get(0);
-        updateColorAndSize();
+        selectAsset(materialIconsController.getAssets(category).get(0));
         notifyUpdated();
     }
 
     @Override
     public void setSelectedAsset(ImageAsset asset) {
+        selectAsset(asset);
+        notifyUpdated();
+    }
+
+    @Override
+    public void setSelectedAssets(List<ImageAsset> assets) {
+        if (assets.isEmpty() || assets.equals(selectedAssets)) {
+            return;
+        }
+        if (!assets.contains(selectedAsset)) {
+            selectedAsset = assets.get(0);
+            updateColorAndSize();
+        }
+        selectedAssets = new ArrayList<ImageAsset>(assets);
+        notifyUpdated();
+    }
+
+    private void selectAsset(ImageAsset asset) {
         selectedAsset = asset;
+        selectedAssets = Collections.singletonList(asset);
         updateColorAndSize();
-        notifyUpdated();
     }
 
     private void updateColorAndSize() {
@@ -163,6 +189,13 @@ public class IconsImporterController implements IIconsImporterController {
         if (!selectedAsset.getSizes().contains(selectedSize)) {
             selectedSize = selectedAsset.getSizes().get(0);
         }
+        selectedSizes = Collections.emptyList();
+        notifyUpdated();
+    }
+
+    @Override
+    public void setSelectedSizes(List<String> sizes) {
+        selectedSizes = new ArrayList<String>(sizes);
         notifyUpdated();
     }
 
@@ -176,6 +209,13 @@ public class IconsImporterController implements IIconsImporterController {
         if (!selectedAsset.getColors().contains(selectedColor)) {
             selectedSize = selectedAsset.getColors().get(0);
         }
+        selectedColors = Collections.emptyList();
+        notifyUpdated();
+    }
+
+    @Override
+    public void setSelectedColors(List<String> colors) {
+        selectedColors = new ArrayList<String>(colors);
         notifyUpdated();
     }
 
@@ -202,25 +242,19 @@ public class IconsImporterController implements IIconsImporterController {
     }
 
     @Override
-    public File getImageFile(ImageAsset asset, String color, Resolution resolution) {
-        return getSelectedIconPack().getImageFile(asset, color, resolution);
+    public Icon getThumbnail(ImageAsset asset) {
+        return getControllerForIconPackId(asset.getIconPack()).getThumbnail(asset);
     }
 
     @Override
-    public File getThumbnailFile(ImageAsset asset) {
-        final IIconPackController iconPackController = getControllerForIconPackId(asset.getIconPack());
-        return iconPackController.getImageFile(asset, "black", iconPackController.getThumbnailResolution());
-    }
-
-    @Override
-    public File getSelectedImageFile() {
-        return getSelectedImageFile(Resolution.HDPI);
+    public String getSelectedImagePath() {
+        return getSelectedImagePath(Resolution.HDPI);
     }
 
     @Override
-    public File getSelectedImageFile(Resolution resolution) {
+    public String getSelectedImagePath(Resolution resolution) {
         final IIconPackController iconPackController = getSelectedIconPack();
-        return iconPackController.getImageFile(selectedAsset, selectedColor, selectedSize, resolution);
+        return iconPackController.getImagePath(selectedAsset, selectedColor, selectedSize, resolution);
     }
 
     @Override
@@ -248,6 +282,11 @@ public class IconsImporterController implements IIconsImporterController {
         return selectedAsset;
     }
 
+    @Override
+    public List<ImageAsset> getSelectedAssets() {
+        return selectedAssets;
+    }
+
     @Override
     public String getSelectedSize() {
         return selectedSize;
@@ -258,6 +297,21 @@ public class IconsImporterController implements IIconsImporterController {
         return selectedColor;
     }
 
+    @Override
+    public List<String> getSelectedSizes() {
+        return selectedSizes.isEmpty() ? Collections.singletonList(selectedSize) : selectedSizes;
+    }
+
+    @Override
+    public List<String> getSelectedColors() {
+        return selectedColors.isEmpty() ? Collections.singletonList(selectedColor) : selectedColors;
+    }
+
+    @Override
+    public boolean isBulkSelection() {
+        return selectedAssets.size() > 1 || getSelectedSizes().size() > 1 || getSelectedColors().size() > 1;
+    }
+
     @Override
     public IIconPackController getSelectedIconPack() {
         return getControllerForIconPackId(selectedAsset.getIconPack());
@@ -290,8 +344,43 @@ public class IconsImporterController implements IIconsImporterController {
     @Override
     public RefactoringTask getTask(Project project) {
         final RefactoringTask task = new RefactoringTask(project);
+        if (!isBulkSelection()) {
+            addImages(task, selectedAsset, selectedColor, selectedSize, getExportName());
+            return task;
+        }
+        final Map<String, List<ImageAsset>> assetsByName = new HashMap<String, List<ImageAsset>>();
+        for (ImageAsset asset : selectedAssets) {
+            List<ImageAsset> assets = assetsByName.get(asset.getName());
+            if (assets == null) {
+                assets = new ArrayList<ImageAsset>(1);
+                assetsByName.put(asset.getName(), assets);
+            }
+            assets.add(asset);
+        }
+        for (ImageAsset asset : selectedAssets) {
+            final List<String> colors = getAvailable(getSelectedColors(), asset.getColors());
+            final List<String> sizes = getAvailable(getSelectedSizes(), asset.getSizes());
+            final String name = getBulkExportName(asset, assetsByName.get(asset.getName()));
+            for (String color : colors) {
+                for (String size : sizes) {
+                    final StringBuilder exportName = new StringBuilder(name);
+                    if (getSelectedColors().size() > 1) {
+                        exportName.append('_').append(color);
+                    }
+                    if (getSelectedSizes().size() > 1) {
+                        exportName.append('_').append(size);
+                    }
+                    addImages(task, asset, color, size, exportName.toString());
+                }
+            }
+        }
+        return task;
+    }
+
+    private void addImages(RefactoringTask task, ImageAsset asset, String color, String size, String exportName) {
+        final IIconPackController iconPackController = getControllerForIconPackId(asset.getIconPack());
         final ImageInformation baseInformation = ImageInformation.newBuilder()
-                                                                 .setExportName(getExportName())
+                                                                 .setExportName(exportName)
                                                                  .setExportPath(getExportRoot())
                                                                  .setFormat(getFormat())
                                                                  .build();
@@ -299,25 +388,56 @@ public class IconsImporterController implements IIconsImporterController {
             ImageInformation.Builder imageInformationBuilder = ImageInformation.newBuilder(baseInformation);
             imageInformationBuilder.setTargetResolution(resolution);
             imageInformationBuilder.setVector(resolution == Resolution.ANYDPI);
-            final File selectedImageFile;
-            if (getSelectedAsset().getResolutions().contains(resolution)) {
-                selectedImageFile = getSelectedImageFile(resolution);
+            final String imagePath;
+            if (asset.getResolutions().contains(resolution)) {
+                imagePath = iconPackController.getImagePath(asset, color, size, resolution);
             } else {
-                if (getSelectedIconPack().getId().equals(materialIconsController.getIconPack().getId())) {
-                    selectedImageFile = getSelectedImageFile(Resolution.HDPI);
-                    imageInformationBuilder.setFactor(RefactorUtils.getScaleFactor(resolution, Resolution.HDPI));
-                } else if (androidIconsController != null &&
-                           getSelectedIconPack().getId().equals(androidIconsController.getIconPack().getId())) {
-                    selectedImageFile = getSelectedImageFile(Resolution.XXHDPI);
-                    imageInformationBuilder.setFactor(RefactorUtils.getScaleFactor(resolution, Resolution.XXHDPI));
-                } else {
-                    throw new IllegalStateException();
+                final Resolution sourceResolution = RefactorUtils.getSourceResolution(resolution,
+                                                                                      asset.getResolutions());
+                if (sourceResolution == null) {
+                    LOGGER.warn(String.format("%s isn't available as a bitmap, skipping %s", asset, resolution));
+                    continue;
                 }
+                imagePath = iconPackController.getImagePath(asset, color, size, sourceResolution);
+                imageInformationBuilder.setFactor(RefactorUtils.getScaleFactor(resolution, sourceResolution));
             }
-            imageInformationBuilder.setImageFile(selectedImageFile);
+            // Only the archive path is resolved here, the image is read by the task in the background
+            imageInformationBuilder.setIconPackPath(imagePath);
             task.addImage(imageInformationBuilder.build());
         }
-        return task;
+    }
+
+    /**
+     * Assets of different icon packs or categories can share a name, e.g. when selected from merged search results.
+     * They would overwrite each other's targets, so their names are prefixed with what tells them apart.
+     */
+    private static String getBulkExportName(ImageAsset asset, List<ImageAsset> sameNamedAssets) {
+        boolean otherIconPack = false;
+        boolean otherCategory = false;
+        for (ImageAsset other : sameNamedAssets) {
+            if (!other.getIconPack().equals(asset.getIconPack())) {
+                otherIconPack = true;
+            } else if (!other.getCategory().equals(asset.getCategory())) {
+                otherCategory = true;
+            }
+        }
+        final StringBuilder name = new StringBuilder();
+        if (otherIconPack) {
+            name.append(asset.getIconPack()).append('_');
+        }
+        if (otherCategory) {
+            name.append(asset.getCategory()).append('_');
+        }
+        return name.append(asset.getName()).toString();
+    }
+
+    /**
+     * @return the selected values the asset is available in, or its first one if it has none of them
+     */
+    private static List<String> getAvailable(List<String> selected, List<String> available) {
+        final List<String> result = new ArrayList<String>(selected);
+        result.retainAll(available);
+        return result.isEmpty() ? Collections.singletonList(available.get(0)) : result;
     }
 
     @Override
@@ -1,13 +1,14 @@
 package de.mprengemann.intellij.plugin.androidicons.controllers.icons;
 
+import de.mprengemann.intellij.plugin.androidicons.controllers.IController;
 import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 
-import java.io.File;
+import javax.swing.Icon;
 import java.util.List;
 
-public interface IIconPackController {
+public interface IIconPackController extends IController<IconPackObserver> {
 
     String getId();
 
@@ -15,11 +16,14 @@ public interface IIconPackController {
 
     List<ImageAsset> getAssets(List<String> categories);
 
-    File getImageFile(ImageAsset asset, String color, Resolution resolution);
+    /**
+     * @return the assets whose name matches the query, best match first
+     */
+    List<ImageAsset> search(String query);
 
-    File getImageFile(ImageAsset asset, String color, String size, Resolution resolution);
+    String getImagePath(ImageAsset asset, String color, Resolution resolution);
 
-    void tearDown();
+    String getImagePath(ImageAsset asset, String color, String size, Resolution resolution);
 
     List<String> getCategories();
 
@@ -29,4 +33,8 @@ public interface IIconPackController {
 
     Resolution getThumbnailResolution();
 
+    Icon getThumbnail(ImageAsset asset);
+
+    void reloadThumbnails();
+
 }
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.controllers.icons;
+
+import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Search index over the asset names of an icon pack. Substrings are looked up through trigram posting lists, or by a
+ * scan of the names for queries of one or two characters, while every word of the query is matched against the
+ * distinct name tokens ("ic", "arrow", "back", ...) by prefix, with one typo allowed from four characters on and two
+ * from eight. Results are ranked exact name, name prefix, token prefix, substring and typo matches, shorter names
+ * first.
+ */
+public class IconPackSearchIndex {
+
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int TOKEN_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+    private static final int TYPO = 4;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+    private static final char SEPARATOR = '_';
+
+    private final List<ImageAsset> assets;
+    private final String[] names;
+    private final Map<String, int[]> trigrams;
+    private final String[] tokens;
+    private final int[][] tokenAssets;
+
+    public IconPackSearchIndex(List<ImageAsset> assets) {
+        this.assets = new ArrayList<ImageAsset>(assets);
+        this.names = new String[assets.size()];
+        final Map<String, List<Integer>> trigramIds = new HashMap<String, List<Integer>>();
+        final Map<String, List<Integer>> tokenIds = new TreeMap<String, List<Integer>>();
+        for (int id = 0; id < names.length; id++) {
+            final String name = normalize(assets.get(id).getName());
+            names[id] = name;
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                addId(trigramIds, name.substring(i, i + 3), id);
+            }
+            for (String token : name.split(String.valueOf(SEPARATOR))) {
+                if (token.length() > 0) {
+                    addId(tokenIds, token, id);
+                }
+            }
+        }
+
+        this.trigrams = new HashMap<String, int[]>(trigramIds.size());
+        for (Map.Entry<String, List<Integer>> entry : trigramIds.entrySet()) {
+            trigrams.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        this.tokens = tokenIds.keySet().toArray(new String[tokenIds.size()]);
+        this.tokenAssets = new int[tokens.length][];
+        for (int i = 0; i < tokens.length; i++) {
+            tokenAssets[i] = toArray(tokenIds.get(tokens[i]));
+        }
+    }
+
+    /**
+     * @return all assets matching the query, best match first
+     */
+    public List<ImageAsset> search(String query) {
+        final String normalized = query != null ? normalize(query) : "";
+        if (normalized.length() == 0) {
+            return Collections.emptyList();
+        }
+
+        final int[] scores = new int[names.length];
+        Arrays.fill(scores, NO_MATCH);
+        final List<Integer> matches = new ArrayList<Integer>();
+        for (int id : findTokenCandidates(normalized)) {
+            scores[id] = score(names[id], normalized, true);
+            matches.add(id);
+        }
+        for (int id : findSubstringCandidates(normalized)) {
+            if (scores[id] == NO_MATCH) {
+                // Sharing all trigrams doesn't guarantee the substring itself
+                scores[id] = score(names[id], normalized, false);
+                if (scores[id] != NO_MATCH) {
+                    matches.add(id);
+                }
+            }
+        }
+        Collections.sort(matches, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                if (scores[first] != scores[second]) {
+                    return scores[first] < scores[second] ? -1 : 1;
+                }
+                if (names[first].length() != names[second].length()) {
+                    return names[first].length() < names[second].length() ? -1 : 1;
+                }
+                return names[first].compareTo(names[second]);
+            }
+        });
+
+        final List<ImageAsset> result = new ArrayList<ImageAsset>(matches.size());
+        for (int id : matches) {
+            result.add(assets.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Merges the results of several icon packs for the same query, keeping the ranking of {@link #search(String)}.
+     */
+    public static List<ImageAsset> merge(String query, List<List<ImageAsset>> results) {
+        final String normalized = normalize(query);
+        final List<ImageAsset> merged = new ArrayList<ImageAsset>();
+        final Map<ImageAsset, Integer> scores = new IdentityHashMap<ImageAsset, Integer>();
+        for (List<ImageAsset> result : results) {
+            for (ImageAsset asset : result) {
+                merged.add(asset);
+                scores.put(asset, score(normalize(asset.getName()), normalized, true));
+            }
+        }
+        Collections.sort(merged, new Comparator<ImageAsset>() {
+            @Override
+            public int compare(ImageAsset first, ImageAsset second) {
+                final int firstScore = scores.get(first);
+                final int secondScore = scores.get(second);
+                if (firstScore != secondScore) {
+                    return firstScore < secondScore ? -1 : 1;
+                }
+                final int firstLength = first.getName().length();
+                final int secondLength = second.getName().length();
+                return firstLength < secondLength ? -1 : (firstLength == secondLength ? 0 : 1);
+            }
+        });
+        return merged;
+    }
+
+    /**
+     * Intersects the posting lists of all trigrams of the query. Queries shorter than a trigram scan the names.
+     */
+    private int[] findSubstringCandidates(String query) {
+        if (query.length() < 3) {
+            final int[] ids = new int[names.length];
+            int count = 0;
+            for (int id = 0; id < names.length; id++) {
+                if (names[id].contains(query)) {
+                    ids[count++] = id;
+                }
+            }
+            return Arrays.copyOf(ids, count);
+        }
+        int[] ids = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            final int[] postings = trigrams.get(query.substring(i, i + 3));
+            if (postings == null) {
+                return new int[0];
+            }
+            ids = ids == null ? postings : intersect(ids, postings);
+            if (ids.length == 0) {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Matches every word of the query against the name tokens, all words have to match a token of an asset.
+     */
+    private int[] findTokenCandidates(String query) {
+        int[] ids = null;
+        for (String word : query.split(String.valueOf(SEPARATOR))) {
+            if (word.length() == 0) {
+                continue;
+            }
+            final boolean[] matching = new boolean[names.length];
+            int count = 0;
+            for (int i = findFirstToken(word); i < tokens.length && tokens[i].startsWith(word); i++) {
+                count += mark(matching, tokenAssets[i]);
+            }
+            final int maxEdits = getMaxEdits(word);
+            if (maxEdits > 0) {
+                for (int i = 0; i < tokens.length; i++) {
+                    if (!tokens[i].startsWith(word) && getPrefixDistance(word, tokens[i], maxEdits) <= maxEdits) {
+                        count += mark(matching, tokenAssets[i]);
+                    }
+                }
+            }
+            final int[] wordIds = new int[count];
+            for (int id = 0, j = 0; id < matching.length; id++) {
+                if (matching[id]) {
+                    wordIds[j++] = id;
+                }
+            }
+            ids = ids == null ? wordIds : intersect(ids, wordIds);
+            if (ids.length == 0) {
+                break;
+            }
+        }
+        return ids != null ? ids : new int[0];
+    }
+
+    private static int score(String name, String query, boolean tokenMatch) {
+        if (name.equals(query)) {
+            return EXACT;
+        }
+        if (name.startsWith(query)) {
+            return PREFIX;
+        }
+        final int index = name.indexOf(query);
+        if (index > 0) {
+            return name.indexOf(SEPARATOR + query) >= 0 ? TOKEN_PREFIX : SUBSTRING;
+        }
+        if (!tokenMatch) {
+            return NO_MATCH;
+        }
+        for (String word : query.split(String.valueOf(SEPARATOR))) {
+            if (word.length() > 0 && !containsTokenPrefix(name, word)) {
+                return TYPO;
+            }
+        }
+        return SUBSTRING;
+    }
+
+    private static boolean containsTokenPrefix(String name, String word) {
+        return name.startsWith(word) || name.contains(SEPARATOR + word);
+    }
+
+    private int findFirstToken(String prefix) {
+        final int index = Arrays.binarySearch(tokens, prefix);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static int getMaxEdits(String word) {
+        if (word.length() >= 8) {
+            return 2;
+        }
+        return word.length() >= 4 ? 1 : 0;
+    }
+
+    /**
+     * Smallest edit distance between the word and a prefix of the token of about the same length. Adjacent characters
+     * swapped count as a single edit. The last row of the distance matrix holds the distance to every prefix, so
+     * only three rows are kept.
+     */
+    private static int getPrefixDistance(String word, String token, int maxEdits) {
+        final int columns = Math.min(token.length(), word.length() + maxEdits) + 1;
+        int[] previousPrevious = new int[columns];
+        int[] previous = new int[columns];
+        int[] current = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= word.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j < columns; j++) {
+                final int cost = word.charAt(i - 1) == token.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 &&
+                    word.charAt(i - 1) == token.charAt(j - 2) &&
+                    word.charAt(i - 2) == token.charAt(j - 1)) {
+                    distance = Math.min(distance, previousPrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+            if (rowMinimum > maxEdits) {
+                return rowMinimum;
+            }
+            final int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        int distance = Integer.MAX_VALUE;
+        for (int j = Math.max(1, word.length() - maxEdits); j < columns; j++) {
+            distance = Math.min(distance, previous[j]);
+        }
+        return distance;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ENGLISH).replaceAll("[\\s\\-]+", String.valueOf(SEPARATOR));
+    }
+
+    private static int mark(boolean[] matching, int[] ids) {
+        int count = 0;
+        for (int id : ids) {
+            if (!matching[id]) {
+                matching[id] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int[] intersect(int[] first, int[] second) {
+        final int[] result = new int[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static void addId(Map<String, List<Integer>> index, String key, int id) {
+        List<Integer> ids = index.get(key);
+        if (ids == null) {
+            ids = new ArrayList<Integer>();
+            index.put(key, ids);
+        }
+        if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+            ids.add(id);
+        }
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        final int[] array = new int[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.controllers.icons;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.diagnostic.Logger;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackArchive;
+import de.mprengemann.intellij.plugin.androidicons.resources.ResourceLoader;
+import de.mprengemann.intellij.plugin.androidicons.util.AtomicFileUtils;
+import org.apache.commons.io.FileUtils;
+
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All thumbnails of an icon pack packed into a single image, next to an index with the position of every asset.
+ * The atlas is built once from the icon pack archive by the background update of the icon packs, so rendering an
+ * asset list only needs sub-images of an image which is already in memory.
+ */
+public class ThumbnailAtlas {
+
+    private static final String TAG = ThumbnailAtlas.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+    private static final String ATLAS_FILE = "thumbnails.png";
+    private static final String INDEX_FILE = "thumbnails.json";
+    private static final String THUMBNAIL_COLOR = "black";
+    private static final int VERSION = 1;
+    private static final int MAX_ROW_WIDTH = 2048;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Gson GSON = new Gson();
+
+    private final BufferedImage atlas;
+    private final Map<String, int[]> offsets;
+    private final Map<String, Icon> icons = new ConcurrentHashMap<String, Icon>();
+
+    private ThumbnailAtlas(BufferedImage atlas, Map<String, int[]> offsets) {
+        this.atlas = atlas;
+        this.offsets = offsets;
+    }
+
+    public static boolean exists(IIconPackController controller) {
+        final File directory = getDirectory(controller);
+        return new File(directory, ATLAS_FILE).exists() && new File(directory, INDEX_FILE).exists();
+    }
+
+    /**
+     * Loads the atlas of the given icon pack. It's never built here, as this is called while rendering.
+     *
+     * @return null if the atlas isn't built yet or can't be read
+     */
+    public static ThumbnailAtlas load(IIconPackController controller) {
+        final File directory = getDirectory(controller);
+        final File atlasFile = new File(directory, ATLAS_FILE);
+        final File indexFile = new File(directory, INDEX_FILE);
+        if (atlasFile.exists() && indexFile.exists()) {
+            try {
+                final Index index = GSON.fromJson(FileUtils.readFileToString(indexFile, UTF_8), Index.class);
+                final BufferedImage atlas = ImageIO.read(atlasFile);
+                if (index != null && index.version == VERSION && index.offsets != null && atlas != null) {
+                    return new ThumbnailAtlas(atlas, index.offsets);
+                }
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            } catch (JsonParseException e) {
+                LOGGER.warn(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Packs the thumbnails of all assets of the icon pack and stores the atlas in the export folder of the pack.
+     */
+    public static ThumbnailAtlas build(IIconPackController controller) {
+        final IconPackArchive archive = IconPackArchive.getInstance();
+        final Map<String, BufferedImage> thumbnails = new LinkedHashMap<String, BufferedImage>();
+        for (ImageAsset asset : controller.getIconPack().getAssets()) {
+            final String path = controller.getImagePath(asset, THUMBNAIL_COLOR, controller.getThumbnailResolution());
+            try {
+                final InputStream stream = archive.openStream(path);
+                if (stream == null) {
+                    continue;
+                }
+                final BufferedImage thumbnail;
+                try {
+                    thumbnail = ImageIO.read(stream);
+                } finally {
+                    stream.close();
+                }
+                if (thumbnail != null) {
+                    thumbnails.put(getKey(asset), thumbnail);
+                }
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            }
+        }
+
+        final Map<String, int[]> offsets = new HashMap<String, int[]>();
+        final List<String> keys = new ArrayList<String>(thumbnails.keySet());
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        int width = 1;
+        for (String key : keys) {
+            final BufferedImage thumbnail = thumbnails.get(key);
+            if (x > 0 && x + thumbnail.getWidth() > MAX_ROW_WIDTH) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            offsets.put(key, new int[] {x, y, thumbnail.getWidth(), thumbnail.getHeight()});
+            x += thumbnail.getWidth();
+            width = Math.max(width, x);
+            rowHeight = Math.max(rowHeight, thumbnail.getHeight());
+        }
+
+        final BufferedImage atlas = new BufferedImage(width, Math.max(1, y + rowHeight), BufferedImage.TYPE_INT_ARGB);
+        for (String key : keys) {
+            final int[] offset = offsets.get(key);
+            final BufferedImage thumbnail = thumbnails.get(key);
+            atlas.setRGB(offset[0], offset[1], offset[2], offset[3],
+                         thumbnail.getRGB(0, 0, offset[2], offset[3], null, 0, offset[2]), 0, offset[2]);
+        }
+
+        final File directory = getDirectory(controller);
+        try {
+            final File atlasFile = new File(directory, ATLAS_FILE);
+            final File atlasTempFile = AtomicFileUtils.createSiblingTempFile(atlasFile);
+            ImageIO.write(atlas, "png", atlasTempFile);
+            AtomicFileUtils.replace(atlasTempFile, atlasFile);
+            final Index index = new Index();
+            index.offsets = offsets;
+            final File indexFile = new File(directory, INDEX_FILE);
+            final File indexTempFile = AtomicFileUtils.createSiblingTempFile(indexFile);
+            FileUtils.writeStringToFile(indexTempFile, GSON.toJson(index), UTF_8);
+            AtomicFileUtils.replace(indexTempFile, indexFile);
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        }
+        LOGGER.info(String.format("Packed %d thumbnails of %s", offsets.size(), controller.getId()));
+        return new ThumbnailAtlas(atlas, offsets);
+    }
+
+    public Icon getIcon(ImageAsset asset) {
+        final String key = getKey(asset);
+        Icon icon = icons.get(key);
+        if (icon == null) {
+            final int[] offset = offsets.get(key);
+            if (offset == null) {
+                return null;
+            }
+            icon = new ImageIcon(atlas.getSubimage(offset[0], offset[1], offset[2], offset[3]));
+            icons.put(key, icon);
+        }
+        return icon;
+    }
+
+    private static File getDirectory(IIconPackController controller) {
+        return ResourceLoader.getAssetResource(controller.getIconPack().getPath());
+    }
+
+    private static String getKey(ImageAsset asset) {
+        return asset.getCategory() + "/" + asset.getName();
+    }
+
+    private static class Index {
+        private int version = VERSION;
+        private Map<String, int[]> offsets;
+    }
+}
@@ -1,17 +1,25 @@
 package de.mprengemann.intellij.plugin.androidicons.controllers.icons.androidicons;
 
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackObserver;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackSearchIndex;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.ThumbnailAtlas;
 import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
-import de.mprengemann.intellij.plugin.androidicons.resources.ResourceLoader;
 
-import java.io.File;
+import javax.swing.Icon;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public class AndroidIconsController implements IAndroidIconsController {
 
+    private final Set<IconPackObserver> observerSet = new CopyOnWriteArraySet<IconPackObserver>();
     private IconPack iconPack;
+    private final Object thumbnailLock = new Object();
+    private volatile ThumbnailAtlas thumbnailAtlas;
+    private IconPackSearchIndex searchIndex;
 
     public AndroidIconsController(IconPack iconPack) {
         this.iconPack = iconPack;
@@ -37,6 +45,42 @@ public class AndroidIconsController implements IAndroidIconsController {
         return Resolution.LDPI;
     }
 
+    @Override
+    public Icon getThumbnail(ImageAsset asset) {
+        ThumbnailAtlas atlas = thumbnailAtlas;
+        if (atlas == null) {
+            // Decoding the atlas only blocks other thumbnail requests, not the synchronized methods used by the UI
+            synchronized (thumbnailLock) {
+                atlas = thumbnailAtlas;
+                if (atlas == null) {
+                    atlas = ThumbnailAtlas.load(this);
+                    thumbnailAtlas = atlas;
+                }
+            }
+        }
+        return atlas != null ? atlas.getIcon(asset) : null;
+    }
+
+    @Override
+    public void reloadThumbnails() {
+        synchronized (thumbnailLock) {
+            thumbnailAtlas = null;
+        }
+        for (IconPackObserver observer : observerSet) {
+            observer.thumbnailsReloaded();
+        }
+    }
+
+    @Override
+    public void addObserver(IconPackObserver observer) {
+        observerSet.add(observer);
+    }
+
+    @Override
+    public void removeObserver(IconPackObserver observer) {
+        observerSet.remove(observer);
+    }
+
     @Override
     public List<ImageAsset> getAssets(String category) {
         return iconPack.getAssets();
@@ -47,30 +91,41 @@ public class AndroidIconsController implements IAndroidIconsController {
         return iconPack.getAssets();
     }
 
+    @Override
+    public synchronized List<ImageAsset> search(String query) {
+        if (searchIndex == null) {
+            searchIndex = new IconPackSearchIndex(iconPack.getAssets());
+        }
+        return searchIndex.search(query);
+    }
+
     @Override
     public List<String> getCategories() {
         return iconPack.getCategories();
     }
 
     @Override
-    public File getImageFile(ImageAsset asset, String color, Resolution resolution) {
-        return getImageFile(asset, color, null, resolution);
+    public String getImagePath(ImageAsset asset, String color, Resolution resolution) {
+        return getImagePath(asset, color, null, resolution);
     }
 
     @Override
-    public File getImageFile(ImageAsset asset, String color, String size, Resolution resolution) {
+    public String getImagePath(ImageAsset asset, String color, String size, Resolution resolution) {
         if (resolution == Resolution.ANYDPI) {
             throw new IllegalStateException("Vectors not supported by AndroidIcons");
         }
-        final String localPath = String.format("%s/%s/%s.png",
-                                               color,
-                                               resolution.toString().toLowerCase(Locale.ENGLISH),
-                                               asset.getName());
-        return ResourceLoader.getAssetResource(new File(iconPack.getPath(), localPath).getPath());
+        return String.format("%s/%s/%s/%s.png",
+                             iconPack.getPath(),
+                             color,
+                             resolution.toString().toLowerCase(Locale.ENGLISH),
+                             asset.getName());
     }
 
     @Override
     public void tearDown() {
+        observerSet.clear();
         iconPack = null;
+        thumbnailAtlas = null;
+        searchIndex = null;
     }
 }
@@ -3,20 +3,28 @@ package de.mprengemann.intellij.plugin.androidicons.controllers.icons.materialic
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.intellij.ide.BrowserUtil;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackObserver;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackSearchIndex;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.ThumbnailAtlas;
 import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
-import de.mprengemann.intellij.plugin.androidicons.resources.ResourceLoader;
 
-import java.io.File;
+import javax.swing.Icon;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public class MaterialIconsController implements IMaterialIconsController {
 
+    private final Set<IconPackObserver> observerSet = new CopyOnWriteArraySet<IconPackObserver>();
     private IconPack iconPack;
+    private final Object thumbnailLock = new Object();
+    private volatile ThumbnailAtlas thumbnailAtlas;
+    private IconPackSearchIndex searchIndex;
     private Map<String, List<ImageAsset>> categoryMap;
 
     public MaterialIconsController(IconPack iconPack) {
@@ -58,6 +66,41 @@ public class MaterialIconsController implements IMaterialIconsController {
         return Resolution.MDPI;
     }
 
+    @Override
+    public Icon getThumbnail(ImageAsset asset) {
+        ThumbnailAtlas atlas = thumbnailAtlas;
+        if (atlas == null) {
+            synchronized (thumbnailLock) {
+                atlas = thumbnailAtlas;
+                if (atlas == null) {
+                    atlas = ThumbnailAtlas.load(this);
+                    thumbnailAtlas = atlas;
+                }
+            }
+        }
+        return atlas != null ? atlas.getIcon(asset) : null;
+    }
+
+    @Override
+    public void reloadThumbnails() {
+        synchronized (thumbnailLock) {
+            thumbnailAtlas = null;
+        }
+        for (IconPackObserver observer : observerSet) {
+            observer.thumbnailsReloaded();
+        }
+    }
+
+    @Override
+    public void addObserver(IconPackObserver observer) {
+        observerSet.add(observer);
+    }
+
+    @Override
+    public void removeObserver(IconPackObserver observer) {
+        observerSet.remove(observer);
+    }
+
     @Override
     public List<ImageAsset> getAssets(String category) {
         return categoryMap.get(category);
@@ -68,6 +111,14 @@ public class MaterialIconsController implements IMaterialIconsController {
         return iconPack.getAssets();
     }
 
+    @Override
+    public synchronized List<ImageAsset> search(String query) {
+        if (searchIndex == null) {
+            searchIndex = new IconPackSearchIndex(iconPack.getAssets());
+        }
+        return searchIndex.search(query);
+    }
+
     @Override
     public List<String> getCategories() {
         return iconPack.getCategories();
@@ -79,19 +130,19 @@ public class MaterialIconsController implements IMaterialIconsController {
     }
 
     @Override
-    public File getImageFile(ImageAsset asset, String color, Resolution resolution) {
-        return getImageFile(asset, color, "24dp", resolution);
+    public String getImagePath(ImageAsset asset, String color, Resolution resolution) {
+        return getImagePath(asset, color, "24dp", resolution);
     }
 
     @Override
-    public File getImageFile(ImageAsset asset, String color, String size, Resolution resolution) {
+    public String getImagePath(ImageAsset asset, String color, String size, Resolution resolution) {
         final String localPath;
         if (resolution == Resolution.ANYDPI) {
             localPath = getVectorFilePath(asset);
         } else {
             localPath = getImageFilePath(asset, color, size, resolution);
         }
-        return ResourceLoader.getAssetResource(new File(iconPack.getPath(), localPath).getPath());
+        return iconPack.getPath() + "/" + localPath;
     }
 
     private String getImageFilePath(ImageAsset asset, String color, String size, Resolution resolution) {
@@ -112,6 +163,9 @@ public class MaterialIconsController implements IMaterialIconsController {
 
     @Override
     public void tearDown() {
+        observerSet.clear();
         iconPack = null;
+        thumbnailAtlas = null;
+        searchIndex = null;
     }
 }
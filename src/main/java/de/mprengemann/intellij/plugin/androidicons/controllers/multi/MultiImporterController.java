@@ -9,7 +9,6 @@ import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 import de.mprengemann.intellij.plugin.androidicons.util.ExportNameUtils;
 import de.mprengemann.intellij.plugin.androidicons.util.TextUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
@@ -210,7 +209,7 @@ public class MultiImporterController implements IMultiImporterController {
 
         @Override
         protected void onPostExecute() {
-            FileUtils.deleteQuietly(tempDir);
+            ImageInformation.deleteStagingDir(tempDir);
         }
     }
 }
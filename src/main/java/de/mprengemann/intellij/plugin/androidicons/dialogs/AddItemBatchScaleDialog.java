@@ -1,6 +1,5 @@
 package de.mprengemann.intellij.plugin.androidicons.dialogs;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
@@ -13,6 +12,7 @@ import de.mprengemann.intellij.plugin.androidicons.controllers.batchscale.addite
 import de.mprengemann.intellij.plugin.androidicons.controllers.batchscale.additem.IAddItemBatchScaleImporterController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.defaults.IDefaultsController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.settings.ISettingsController;
+import de.mprengemann.intellij.plugin.androidicons.images.PreviewService;
 import de.mprengemann.intellij.plugin.androidicons.images.ResizeAlgorithm;
 import de.mprengemann.intellij.plugin.androidicons.listeners.SimpleKeyListener;
 import de.mprengemann.intellij.plugin.androidicons.model.Destination;
@@ -20,7 +20,6 @@ import de.mprengemann.intellij.plugin.androidicons.model.Format;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 import de.mprengemann.intellij.plugin.androidicons.util.AndroidFacetUtils;
-import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
 import de.mprengemann.intellij.plugin.androidicons.widgets.ExportNameField;
 import de.mprengemann.intellij.plugin.androidicons.widgets.FileBrowserField;
 import de.mprengemann.intellij.plugin.androidicons.widgets.ResolutionButtonModel;
@@ -237,7 +236,7 @@ public class AddItemBatchScaleDialog extends DialogWrapper implements AddItemBat
     }
 
     private void initRequiredControllers() {
-        final IconApplication container = ApplicationManager.getApplication().getComponent(IconApplication.class);
+        final IconApplication container = IconApplication.getInstance();
         settingsController = container.getControllerFactory().getSettingsController();
         defaultsController = container.getControllerFactory().getDefaultsController();
     }
@@ -378,7 +377,7 @@ public class AddItemBatchScaleDialog extends DialogWrapper implements AddItemBat
                     imageContainer.setIcon(null);
                     return;
                 }
-                ImageUtils.updateImage(imageContainer, file, controller.getFormat());
+                PreviewService.getInstance().updatePreview(imageContainer, file, controller.getFormat());
             }
         });
     }
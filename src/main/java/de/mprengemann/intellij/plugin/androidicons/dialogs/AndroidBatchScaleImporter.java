@@ -13,7 +13,6 @@
 
 package de.mprengemann.intellij.plugin.androidicons.dialogs;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PathMacroManager;
 import com.intellij.openapi.fileChooser.FileChooser;
 import com.intellij.openapi.fileChooser.FileChooserDescriptor;
@@ -40,9 +39,9 @@ import de.mprengemann.intellij.plugin.androidicons.controllers.batchscale.addite
 import de.mprengemann.intellij.plugin.androidicons.controllers.batchscale.additem.IAddItemBatchScaleImporterController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.defaults.IDefaultsController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.settings.ISettingsController;
+import de.mprengemann.intellij.plugin.androidicons.images.PreviewService;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
 import de.mprengemann.intellij.plugin.androidicons.util.AndroidFacetUtils;
-import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
 import de.mprengemann.intellij.plugin.androidicons.util.MathUtils;
 import de.mprengemann.intellij.plugin.androidicons.widgets.FileBrowserField;
 import org.apache.commons.io.FilenameUtils;
@@ -114,7 +113,7 @@ public class AndroidBatchScaleImporter extends DialogWrapper implements BatchSca
     public AndroidBatchScaleImporter(final Project project, final Module module) {
         super(project);
         this.project = project;
-        this.container = ApplicationManager.getApplication().getComponent(IconApplication.class);
+        this.container = IconApplication.getInstance();
         this.controller = new BatchScaleImporterController();
         this.controller.addObserver(this);
         this.module = module;
@@ -318,7 +317,7 @@ public class AndroidBatchScaleImporter extends DialogWrapper implements BatchSca
             imageContainer.setIcon(null);
             return;
         }
-        ImageUtils.updateImage(imageContainer, item.getImageFile(), item.getFormat());
+        PreviewService.getInstance().updatePreview(imageContainer, item.getImageFile(), item.getFormat());
     }
 
     protected VirtualFile getInitialFile() {
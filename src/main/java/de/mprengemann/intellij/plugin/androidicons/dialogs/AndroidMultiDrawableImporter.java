@@ -13,7 +13,6 @@
 
 package de.mprengemann.intellij.plugin.androidicons.dialogs;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PathMacroManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileChooser.FileChooser;
@@ -38,11 +37,11 @@ import de.mprengemann.intellij.plugin.androidicons.controllers.multi.IMultiImpor
 import de.mprengemann.intellij.plugin.androidicons.controllers.multi.MultiImporterController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.multi.MultiImporterObserver;
 import de.mprengemann.intellij.plugin.androidicons.controllers.settings.ISettingsController;
+import de.mprengemann.intellij.plugin.androidicons.images.PreviewService;
 import de.mprengemann.intellij.plugin.androidicons.listeners.SimpleMouseListener;
 import de.mprengemann.intellij.plugin.androidicons.model.Format;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
-import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
 import de.mprengemann.intellij.plugin.androidicons.widgets.ExportNameField;
 import de.mprengemann.intellij.plugin.androidicons.widgets.FileBrowserField;
 import org.apache.commons.io.FileUtils;
@@ -134,7 +133,7 @@ public class AndroidMultiDrawableImporter extends DialogWrapper implements Multi
         this.project = project;
         this.module = module;
 
-        container = ApplicationManager.getApplication().getComponent(IconApplication.class);
+        container = IconApplication.getInstance();
         settingsController = container.getControllerFactory().getSettingsController();
         this.controller = new MultiImporterController(container.getControllerFactory().getDefaultsController());
         this.controller.addObserver(this);
@@ -222,7 +221,7 @@ public class AndroidMultiDrawableImporter extends DialogWrapper implements Multi
         if (file == null) {
             return;
         }
-        ImageUtils.updateImage(imageContainer, file, controller.getFormat());
+        PreviewService.getInstance().updatePreview(imageContainer, file, controller.getFormat());
     }
 
     @Nullable
@@ -301,14 +300,20 @@ public class AndroidMultiDrawableImporter extends DialogWrapper implements Multi
         if (filePath == null) {
             return;
         }
-        final File tempDir = new File(ImageInformation.getTempDir(), virtualFile.getNameWithoutExtension());
+        final String archiveBaseName = virtualFile.getNameWithoutExtension();
         final String archiveName = virtualFile.getName();
         new Task.Modal(project, "Importing Archive...", true) {
             @Override
             public void run(@NotNull final ProgressIndicator progressIndicator) {
                 progressIndicator.setIndeterminate(true);
+                final File tempDir;
+                try {
+                    tempDir = ImageInformation.createStagingDir(archiveBaseName + "-");
+                } catch (IOException e) {
+                    LOGGER.error(e);
+                    return;
+                }
                 try {
-                    FileUtils.forceMkdir(tempDir);
                     ZipUtil.extract(new File(filePath), tempDir, new FilenameFilter() {
                         @Override
                         public boolean accept(File dir, String name) {
@@ -360,7 +365,7 @@ public class AndroidMultiDrawableImporter extends DialogWrapper implements Multi
                             final String title = String.format("Import '%s'", archiveName);
                             if (foundResolutions.isEmpty() || finalFoundAssets == 0) {
                                 Messages.showErrorDialog("No assets found.", title);
-                                FileUtils.deleteQuietly(tempDir);
+                                ImageInformation.deleteStagingDir(tempDir);
                                 return;
                             }
                             final String[] options = new String[] {"Import", "Cancel"};
@@ -377,12 +382,12 @@ public class AndroidMultiDrawableImporter extends DialogWrapper implements Multi
                                 controller.getZipTask(project, tempDir).queue();
                                 close(0);
                             } else {
-                                FileUtils.deleteQuietly(tempDir);
+                                ImageInformation.deleteStagingDir(tempDir);
                             }
                         }
                     });
                 } catch (ProcessCanceledException e) {
-                    FileUtils.deleteQuietly(tempDir);
+                    ImageInformation.deleteStagingDir(tempDir);
                 } catch (IOException e) {
                     LOGGER.error(e);
                 }
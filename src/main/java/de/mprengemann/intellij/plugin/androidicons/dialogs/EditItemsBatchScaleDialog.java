@@ -1,6 +1,5 @@
 package de.mprengemann.intellij.plugin.androidicons.dialogs;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
@@ -166,7 +165,7 @@ public class EditItemsBatchScaleDialog extends DialogWrapper implements AddItemB
     }
 
     private void initRequiredControllers() {
-        final IconApplication container = ApplicationManager.getApplication().getComponent(IconApplication.class);
+        final IconApplication container = IconApplication.getInstance();
         settingsController = container.getControllerFactory().getSettingsController();
         defaultsController = container.getControllerFactory().getDefaultsController();
     }
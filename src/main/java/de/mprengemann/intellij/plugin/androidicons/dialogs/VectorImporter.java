@@ -13,28 +13,25 @@
 
 package de.mprengemann.intellij.plugin.androidicons.dialogs;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.ui.ValidationInfo;
 import com.intellij.openapi.util.SystemInfo;
-import com.intellij.ui.ComboboxSpeedSearch;
-import com.intellij.ui.JBColor;
-import com.intellij.ui.LayeredIcon;
-import com.intellij.ui.ListCellRendererWrapper;
+import com.intellij.ui.DocumentAdapter;
 import com.intellij.util.Consumer;
-import com.intellij.util.ui.EmptyIcon;
 import de.mprengemann.intellij.plugin.androidicons.IconApplication;
 import de.mprengemann.intellij.plugin.androidicons.controllers.defaults.IDefaultsController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.iconimporter.IIconsImporterController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.iconimporter.IconsImporterController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.iconimporter.IconsImporterObserver;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IIconPackController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.icons.materialicons.IMaterialIconsController;
 import de.mprengemann.intellij.plugin.androidicons.controllers.settings.ISettingsController;
+import de.mprengemann.intellij.plugin.androidicons.images.PreviewService;
 import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
-import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
+import de.mprengemann.intellij.plugin.androidicons.widgets.AssetGrid;
 import de.mprengemann.intellij.plugin.androidicons.widgets.ExportNameField;
 import de.mprengemann.intellij.plugin.androidicons.widgets.FileBrowserField;
 import org.apache.commons.lang.StringUtils;
@@ -42,14 +39,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.awt.event.FocusAdapter;
-import java.awt.event.FocusEvent;
-import java.awt.event.ItemEvent;
-import java.awt.event.ItemListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
@@ -66,13 +62,13 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
     private final IIconsImporterController controller;
 
     private JLabel imageContainer;
-    private JComboBox assetSpinner;
+    private AssetGrid assetGrid;
     private JComboBox categorySpinner;
 
     private JPanel uiContainer;
     private FileBrowserField resRoot;
     private ExportNameField resExportName;
-    private JComboBox searchField;
+    private JTextField searchField;
 
     private final ActionListener iconPackActionListener = new ActionListener() {
         @Override
@@ -90,12 +86,15 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
             controller.setSelectedCategory(selectedItem);
         }
     };
-    private final ActionListener assetActionListener = new ActionListener() {
+    private final ListSelectionListener assetSelectionListener = new ListSelectionListener() {
         @Override
-        public void actionPerformed(ActionEvent actionEvent) {
-            final JComboBox source = (JComboBox) actionEvent.getSource();
-            final ImageAsset selectedItem = (ImageAsset) source.getSelectedItem();
-            controller.setSelectedAsset(selectedItem);
+        public void valueChanged(ListSelectionEvent e) {
+            final ImageAsset selectedAsset = assetGrid.getSelectedAsset();
+            if (e.getValueIsAdjusting() || selectedAsset == null) {
+                return;
+            }
+            controller.setSelectedAsset(selectedAsset);
+            controller.setSelectedAssets(assetGrid.getSelectedAssets());
         }
     };
     private final Consumer<File> resRootListener = new Consumer<File>() {
@@ -110,24 +109,19 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
             controller.setExportRoot(path);
         }
     };
-    private final ItemListener searchFieldListener = new ItemListener() {
+    private final DocumentAdapter searchFieldListener = new DocumentAdapter() {
         @Override
-        public void itemStateChanged(ItemEvent e) {
-            final ImageAsset selectedItem = (ImageAsset) searchField.getSelectedItem();
-            if (selectedItem == null) {
-                return;
-            }
-            controller.setSelectedAsset(selectedItem);
+        protected void textChanged(DocumentEvent e) {
+            assetGrid.setQuery(searchField.getText());
         }
     };
-    private ComboboxSpeedSearch comboboxSpeedSearch;
 
     public VectorImporter(Project project, Module module) {
         super(project, true);
         this.project = project;
         this.module = module;
 
-        final IconApplication container = ApplicationManager.getApplication().getComponent(IconApplication.class);
+        final IconApplication container = IconApplication.getInstance();
         materialIconsController = container.getControllerFactory().getMaterialIconsController();
         settingsController = container.getControllerFactory().getSettingsController();
         defaultsController = container.getControllerFactory().getDefaultsController();
@@ -137,9 +131,6 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
         setTitle("Vector Drawable Importer");
         getHelpAction().setEnabled(true);
 
-        AssetSpinnerRenderer renderer = new AssetSpinnerRenderer();
-        //noinspection GtkPreferredJComboBoxRenderer
-        assetSpinner.setRenderer(renderer);
         imageContainer.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
@@ -156,25 +147,11 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
     }
 
     private void initSearch() {
-        final List<ImageAsset> imageAssets = new ArrayList<ImageAsset>();
-        imageAssets.addAll(materialIconsController.getAssets(materialIconsController.getCategories()));
-        for (ImageAsset imageAsset : imageAssets) {
-            searchField.addItem(imageAsset);
-        }
-        searchField.setRenderer(new AssetSpinnerRenderer());
-        comboboxSpeedSearch = new ComboboxSpeedSearch(searchField) {
-            @Override
-            protected String getElementText(Object element) {
-                return element instanceof ImageAsset ? ((ImageAsset) element).getName() : "";
-            }
-        };
-        searchField.addFocusListener(new FocusAdapter() {
-            @Override
-            public void focusGained(FocusEvent e) {
-                comboboxSpeedSearch.showPopup();
-            }
-        });
-        searchField.addItemListener(searchFieldListener);
+        final List<IIconPackController> iconPackControllers = new ArrayList<IIconPackController>();
+        iconPackControllers.add(materialIconsController);
+        assetGrid.setIconPackControllers(iconPackControllers);
+        assetGrid.addListSelectionListener(assetSelectionListener);
+        searchField.getDocument().addDocumentListener(searchFieldListener);
     }
 
     @NotNull
@@ -205,22 +182,16 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
     }
 
     private void updateAssets() {
-        prepareSpinner(assetSpinner, assetActionListener);
-        List<ImageAsset> assets = controller.getAssets();
-        for (ImageAsset asset : assets) {
-            assetSpinner.addItem(asset);
-        }
-        initSpinner(assetSpinner, controller.getSelectedAsset(), assetActionListener);
+        assetGrid.removeListSelectionListener(assetSelectionListener);
+        assetGrid.setAssets(controller.getAssets());
+        assetGrid.setSelectedAsset(controller.getSelectedAsset());
+        assetGrid.addListSelectionListener(assetSelectionListener);
     }
 
     private void updateExportName() {
         resExportName.setText(controller.getExportName());
-    }
-
-    private void updateSearch() {
-        searchField.removeItemListener(searchFieldListener);
-        searchField.setSelectedItem(controller.getSelectedAsset());
-        searchField.addItemListener(searchFieldListener);
+        // Every asset of a bulk export keeps its own name
+        resExportName.setEnabled(!controller.isBulkSelection());
     }
 
     private void updateImage() {
@@ -230,9 +201,9 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
                 if (imageContainer == null) {
                     return;
                 }
-                ImageUtils.updateImage(imageContainer,
-                                       controller.getSelectedImageFile(),
-                                       controller.getFormat());
+                PreviewService.getInstance().updateIconPackPreview(imageContainer,
+                                                                   controller.getSelectedImagePath(),
+                                                                   controller.getFormat());
             }
         });
     }
@@ -261,6 +232,10 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
             return new ValidationInfo("Please select the resources root.", resRoot);
         }
 
+        if (controller.isBulkSelection()) {
+            return null;
+        }
+
         if (StringUtils.isEmpty(controller.getExportName()
                                                       .trim())) {
             return new ValidationInfo("Please select a name for the drawable.", resExportName);
@@ -282,11 +257,16 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
     public void updated() {
         updateCategories();
         updateAssets();
-        updateSearch();
         updateImage();
         updateExportName();
     }
 
+    @Override
+    protected void dispose() {
+        assetGrid.dispose();
+        super.dispose();
+    }
+
     private void createUIComponents() {
         resRoot = new FileBrowserField(FileBrowserField.RESOURCE_DIR_CHOOSER);
     }
@@ -301,27 +281,4 @@ public class VectorImporter extends DialogWrapper implements IconsImporterObserv
             }
         });
     }
-
-    private class AssetSpinnerRenderer extends ListCellRendererWrapper<ImageAsset> {
-        private final Icon EMPTY_ICON = EmptyIcon.ICON_18;
-
-        @Override
-        public void customize(JList list, ImageAsset imageAsset, int index, boolean selected, boolean hasFocus) {
-            LayeredIcon layeredIcon = new LayeredIcon(2);
-            File imageFile = controller.getThumbnailFile(imageAsset);
-            if (imageFile != null && imageFile.exists()) {
-                final ImageIcon icon = new ImageIcon(imageFile.getAbsolutePath());
-                layeredIcon.setIcon(icon, 1, (- icon.getIconWidth() + EMPTY_ICON.getIconWidth())/2, (EMPTY_ICON.getIconHeight() - icon.getIconHeight())/2);
-            }
-            setIcon(layeredIcon);
-            final String searchQuery = comboboxSpeedSearch.getEnteredPrefix();
-            if (searchQuery != null &&
-                searchQuery.trim().length() > 0 &&
-                imageAsset.getName().contains(searchQuery)) {
-                setBackground(JBColor.YELLOW);
-            } else {
-                setBackground(null);
-            }
-        }
-    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps decoded source images of one export in memory, so a master which is exported to several resolutions is
+ * only read once. Entries are keyed by path and modification time and evicted in LRU order as soon as the decoded
+ * pixels exceed the byte budget. Cached images are shared between workers and must not be modified.
+ */
+public class DecodedImageCache {
+
+    public static final long DEFAULT_BYTE_BUDGET = 256L * 1024L * 1024L;
+
+    private final long byteBudget;
+    private final LinkedHashMap<String, Entry> entries;
+    private long usedBytes;
+
+    /**
+     * Uses a quarter of the maximum heap, at most {@link #DEFAULT_BYTE_BUDGET}.
+     */
+    public DecodedImageCache() {
+        this(Math.min(DEFAULT_BYTE_BUDGET, Runtime.getRuntime().maxMemory() / 4));
+    }
+
+    public DecodedImageCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    public BufferedImage get(final ImageInformation information) throws IOException {
+        final String key = getKey(information);
+        final Entry entry;
+        boolean decode = false;
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached == null) {
+                cached = new Entry(information);
+                entries.put(key, cached);
+                decode = true;
+            }
+            entry = cached;
+        }
+
+        if (decode) {
+            entry.run();
+        }
+
+        final BufferedImage image;
+        try {
+            image = entry.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding " + information.getSourceKey(), e);
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                entries.remove(key);
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        if (decode) {
+            account(key, entry, image);
+        }
+        return image;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private synchronized void account(String key, Entry entry, BufferedImage image) {
+        if (entries.get(key) != entry) {
+            return;
+        }
+        entry.bytes = getByteSize(image);
+        usedBytes += entry.bytes;
+
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > byteBudget && iterator.hasNext()) {
+            final Entry eldest = iterator.next().getValue();
+            if (eldest.bytes == 0) {
+                // Still decoding
+                continue;
+            }
+            usedBytes -= eldest.bytes;
+            iterator.remove();
+        }
+    }
+
+    private static String getKey(ImageInformation information) {
+        final File file = information.getImageFile();
+        return file != null ? information.getSourceKey() + '@' + file.lastModified() : information.getSourceKey();
+    }
+
+    private static long getByteSize(BufferedImage image) {
+        final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    private static class Entry extends FutureTask<BufferedImage> {
+        private long bytes;
+
+        Entry(final ImageInformation information) {
+            super(new Callable<BufferedImage>() {
+                @Override
+                public BufferedImage call() throws Exception {
+                    final InputStream stream = information.openImageStream();
+                    final BufferedImage image;
+                    try {
+                        image = ImageIO.read(stream);
+                    } finally {
+                        stream.close();
+                    }
+                    if (image == null) {
+                        throw new IOException("Unsupported image format: " + information.getSourceKey());
+                    }
+                    return image;
+                }
+            });
+        }
+    }
+}
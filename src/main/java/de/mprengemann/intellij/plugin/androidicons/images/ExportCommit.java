@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import de.mprengemann.intellij.plugin.androidicons.util.RunnableUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+
+/**
+ * Writes the staged images of an export to their targets in a single undoable write command. The content is
+ * streamed into the target files through the VFS, instead of copying every file through the PSI, and the VFS events
+ * fired by the command are counted for the log. Replaced targets are copied to the snapshot directory first, so a
+ * failed commit can restore them without keeping their content in memory.
+ */
+public class ExportCommit {
+
+    private static final String TAG = ExportCommit.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+
+    private final Project project;
+    private final String description;
+    private final File snapshotDir;
+    private final List<File> sources = new ArrayList<File>();
+    private final List<File> targets = new ArrayList<File>();
+    private final List<Boolean> overwrites = new ArrayList<Boolean>();
+
+    /**
+     * @param snapshotDir directory the replaced targets are copied to, e.g. the staging directory of the export
+     */
+    public ExportCommit(Project project, String description, File snapshotDir) {
+        this.project = project;
+        this.description = description;
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * @param overwrite whether an existing target may be replaced, otherwise it's kept
+     */
+    public void add(File source, File target, boolean overwrite) {
+        sources.add(source);
+        targets.add(target);
+        overwrites.add(overwrite);
+    }
+
+    /**
+     * Has to be called on the EDT, after the target directories were refreshed.
+     */
+    public void commit() throws IOException {
+        if (sources.isEmpty()) {
+            return;
+        }
+        final LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        final List<VirtualFile> targetDirs = new ArrayList<VirtualFile>(targets.size());
+        for (File target : targets) {
+            VirtualFile targetDir = fileSystem.findFileByIoFile(target.getParentFile());
+            if (targetDir == null) {
+                FileUtils.forceMkdir(target.getParentFile());
+                targetDir = fileSystem.refreshAndFindFileByIoFile(target.getParentFile());
+            }
+            if (targetDir == null) {
+                throw new FileNotFoundException(target.getParent());
+            }
+            targetDirs.add(targetDir);
+        }
+
+        final AtomicInteger eventCount = new AtomicInteger();
+        final MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect();
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void before(@NotNull List<? extends VFileEvent> events) {
+            }
+
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                eventCount.addAndGet(events.size());
+            }
+        });
+        final IOException[] error = new IOException[1];
+        final int[] written = new int[1];
+        final List<VirtualFile> createdFiles = new ArrayList<VirtualFile>();
+        final Map<VirtualFile, File> replacedContents = new LinkedHashMap<VirtualFile, File>();
+        final long start = System.nanoTime();
+        try {
+            RunnableUtils.runWriteCommand(project, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < sources.size(); i++) {
+                            if (write(sources.get(i),
+                                      targetDirs.get(i),
+                                      targets.get(i).getName(),
+                                      overwrites.get(i),
+                                      createdFiles,
+                                      replacedContents)) {
+                                written[0]++;
+                            }
+                        }
+                    } catch (IOException e) {
+                        error[0] = e;
+                        rollback(createdFiles, replacedContents);
+                        written[0] = 0;
+                    }
+                }
+            }, description);
+        } finally {
+            connection.disconnect();
+        }
+        LOGGER.info(format("Committed %d of %d files in %d ms, %d VFS events",
+                           written[0],
+                           sources.size(),
+                           TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                           eventCount.get()));
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    /**
+     * Records the target before it's touched, so {@link #rollback(List, Map)} can restore it if a later file fails.
+     */
+    private boolean write(File source,
+                          VirtualFile targetDir,
+                          String name,
+                          boolean overwrite,
+                          List<VirtualFile> createdFiles,
+                          Map<VirtualFile, File> replacedContents) throws IOException {
+        VirtualFile target = targetDir.findChild(name);
+        if (target == null) {
+            target = targetDir.createChildData(this, name);
+            createdFiles.add(target);
+        } else if (!overwrite) {
+            LOGGER.warn(format("%s appeared during the export, keeping it", target.getPath()));
+            return false;
+        } else if (!replacedContents.containsKey(target)) {
+            final File snapshot = new File(new File(snapshotDir, "replaced"),
+                                           format("%d-%s", replacedContents.size(), name));
+            FileUtils.copyInputStreamToFile(target.getInputStream(), snapshot);
+            replacedContents.put(target, snapshot);
+        }
+        final OutputStream outputStream = target.getOutputStream(this);
+        try {
+            FileUtils.copyFile(source, outputStream);
+        } finally {
+            outputStream.close();
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the files created by the commit and restores the ones it replaced, so a failed export leaves neither
+     * a part of its images nor an empty file behind.
+     */
+    private void rollback(List<VirtualFile> createdFiles, Map<VirtualFile, File> replacedContents) {
+        LOGGER.warn(format("Export failed, rolling back %d created and %d replaced files",
+                           createdFiles.size(),
+                           replacedContents.size()));
+        for (VirtualFile createdFile : createdFiles) {
+            try {
+                createdFile.delete(this);
+            } catch (IOException e) {
+                LOGGER.warn(format("Could not delete %s", createdFile.getPath()), e);
+            }
+        }
+        for (Map.Entry<VirtualFile, File> replacedContent : replacedContents.entrySet()) {
+            try {
+                final InputStream inputStream = FileUtils.openInputStream(replacedContent.getValue());
+                try {
+                    final OutputStream outputStream = replacedContent.getKey().getOutputStream(this);
+                    try {
+                        IOUtils.copy(inputStream, outputStream);
+                    } finally {
+                        outputStream.close();
+                    }
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException e) {
+                LOGGER.warn(format("Could not restore %s", replacedContent.getKey().getPath()), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the images of an export whose target file already exists. Every target directory is listed once, so the
+ * conflicts can be resolved before anything is decoded or written.
+ */
+public class ExportConflictScanner {
+
+    private final Map<File, Set<String>> existingNames = new HashMap<File, Set<String>>();
+
+    /**
+     * @return the images whose target file exists, in the order of the given list
+     */
+    public List<ImageInformation> scan(List<ImageInformation> images) {
+        final List<ImageInformation> conflicts = new ArrayList<ImageInformation>();
+        for (ImageInformation information : images) {
+            if (exists(information.getTargetFile())) {
+                conflicts.add(information);
+            }
+        }
+        return conflicts;
+    }
+
+    public boolean exists(File target) {
+        final File directory = target.getParentFile();
+        Set<String> names = existingNames.get(directory);
+        if (names == null) {
+            final String[] files = directory.list();
+            names = files != null ? new HashSet<String>(Arrays.asList(files)) : Collections.<String>emptySet();
+            existingNames.put(directory, names);
+        }
+        return names.contains(target.getName());
+    }
+}
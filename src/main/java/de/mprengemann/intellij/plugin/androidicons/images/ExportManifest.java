@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.diagnostic.Logger;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+import de.mprengemann.intellij.plugin.androidicons.resources.ResourceLoader;
+import de.mprengemann.intellij.plugin.androidicons.util.AtomicFileUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which inputs produced the files below a res root, so an export can skip images whose source and
+ * settings are unchanged and whose target file was not touched since. The manifest is stored as json in the system
+ * directory of the IDE, one file per res root named after the hash of its path, and keyed by the target path relative
+ * to the res root, so nothing is written into the project. Concurrent exports into the same res root share one
+ * manifest, so none of them drops the records of another when saving.
+ */
+public class ExportManifest {
+
+    private static final String TAG = ExportManifest.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+    private static final String MANIFEST_DIR = "export-manifests";
+    private static final String FILE_SUFFIX = ".json";
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Gson GSON = new Gson();
+    private static final Map<File, ExportManifest> MANIFESTS = new HashMap<File, ExportManifest>();
+
+    private final File root;
+    private final File file;
+    private final Content content;
+    private boolean dirty;
+
+    private ExportManifest(File root, File file, Content content) {
+        this.root = root;
+        this.file = file;
+        this.content = content;
+    }
+
+    /**
+     * @return the manifest of the res root, read on first access
+     */
+    public static ExportManifest getInstance(File root) {
+        final File file = new File(new File(ResourceLoader.getExportPath(), MANIFEST_DIR),
+                                   toHex(newDigest().digest(root.getAbsolutePath().getBytes(UTF_8))) + FILE_SUFFIX);
+        synchronized (MANIFESTS) {
+            ExportManifest manifest = MANIFESTS.get(file);
+            if (manifest == null) {
+                manifest = load(root, file);
+                MANIFESTS.put(file, manifest);
+            }
+            return manifest;
+        }
+    }
+
+    private static ExportManifest load(File root, File file) {
+        Content content = null;
+        if (file.exists()) {
+            try {
+                content = GSON.fromJson(FileUtils.readFileToString(file, UTF_8), Content.class);
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            } catch (JsonParseException e) {
+                LOGGER.warn(e);
+            }
+        }
+        if (content == null || content.version != VERSION || content.entries == null) {
+            content = new Content();
+        }
+        return new ExportManifest(root, file, content);
+    }
+
+    public static String hashFile(File file) throws IOException {
+        return hashStream(new FileInputStream(file));
+    }
+
+    /**
+     * Hashes and closes the stream.
+     */
+    public static String hashStream(InputStream inputStream) throws IOException {
+        final MessageDigest digest = newDigest();
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String hashInputs(ImageInformation information, String sourceHash) {
+        final ResizeAlgorithm algorithm = information.getAlgorithm();
+        final StringBuilder builder = new StringBuilder(sourceHash)
+            .append('|').append(algorithm)
+            .append('|').append(information.isVector() ? "" : algorithm.getPrettyMethod(information.getMethod()))
+            .append('|').append(Float.floatToIntBits(information.getFactor()))
+            .append('|').append(information.getFormat())
+            .append('|').append(information.isNinePatch())
+            .append('|').append(information.isVector());
+        return toHex(newDigest().digest(builder.toString().getBytes(UTF_8)));
+    }
+
+    public synchronized boolean isUpToDate(ImageInformation information, String inputHash) {
+        final File target = information.getTargetFile();
+        final Entry entry = content.entries.get(getKey(target));
+        if (entry == null || !inputHash.equals(entry.inputHash) || !target.isFile()) {
+            return false;
+        }
+        if (target.length() != entry.outputLength) {
+            return false;
+        }
+        if (target.lastModified() == entry.outputModified) {
+            return true;
+        }
+        try {
+            return hashFile(target).equals(entry.outputHash);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the target of the given image if it still contains the exported output. Targets which were skipped
+     * or changed in the meantime are forgotten.
+     */
+    public synchronized void record(ImageInformation information, String inputHash, String outputHash) {
+        final File target = information.getTargetFile();
+        final String key = getKey(target);
+        dirty = true;
+        try {
+            if (target.isFile() && hashFile(target).equals(outputHash)) {
+                final Entry entry = new Entry();
+                entry.inputHash = inputHash;
+                entry.outputHash = outputHash;
+                entry.outputLength = target.length();
+                entry.outputModified = target.lastModified();
+                content.entries.put(key, entry);
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        }
+        content.entries.remove(key);
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            tempFile = AtomicFileUtils.createSiblingTempFile(file);
+            FileUtils.writeStringToFile(tempFile, GSON.toJson(content), UTF_8);
+            AtomicFileUtils.replace(tempFile, file);
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    private String getKey(File target) {
+        return root.getAbsoluteFile().toURI().relativize(target.getAbsoluteFile().toURI()).getPath();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    private static class Content {
+        private int version = VERSION;
+        private Map<String, Entry> entries = new HashMap<String, Entry>();
+    }
+
+    private static class Entry {
+        private String inputHash;
+        private String outputHash;
+        private long outputLength;
+        private long outputModified;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the per image export work of a {@link RefactoringTask} on a worker pool shared by all exports. Images can be
+ * submitted one by one or in groups which have to be processed by the same worker. Every export keeps at most
+ * {@code parallelism} groups in the pool at once, so concurrent exports take turns instead of one export starving the
+ * others. Progress and cancellation are handled on the calling thread, so the {@link ProgressIndicator} is never
+ * touched by the workers. A cancelled export only returns once its running groups are finished, so the caller can
+ * delete what they write.
+ */
+public class ParallelExporter {
+
+    private static final String TAG = ParallelExporter.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final ExecutorService WORKERS =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("ADI export", Runtime.getRuntime().availableProcessors());
+
+    private final ProgressIndicator progressIndicator;
+    private final int parallelism;
+
+    public ParallelExporter(ProgressIndicator progressIndicator) {
+        this(progressIndicator, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelExporter(ProgressIndicator progressIndicator, int parallelism) {
+        this.progressIndicator = progressIndicator;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void export(List<ImageInformation> imageInformationList,
+                       final ExportJob job) throws ProcessCanceledException {
+        final List<List<ImageInformation>> groups = new ArrayList<List<ImageInformation>>(imageInformationList.size());
+        for (ImageInformation information : imageInformationList) {
+            groups.add(Collections.singletonList(information));
+        }
+        exportGroups(groups, new GroupExportJob() {
+            @Override
+            public void export(List<ImageInformation> group) throws Exception {
+                job.export(group.get(0));
+            }
+        });
+    }
+
+    public void exportGroups(List<List<ImageInformation>> groups,
+                             final GroupExportJob job) throws ProcessCanceledException {
+        if (groups.isEmpty()) {
+            return;
+        }
+        int total = 0;
+        for (List<ImageInformation> group : groups) {
+            total += group.size();
+        }
+        final CompletionService<List<ImageInformation>> completionService =
+            new ExecutorCompletionService<List<ImageInformation>>(WORKERS);
+        final List<Future<List<ImageInformation>>> futures =
+            new ArrayList<Future<List<ImageInformation>>>(groups.size());
+        final RunningGroups runningGroups = new RunningGroups();
+        boolean finished = false;
+        try {
+            int submitted = 0;
+            int pending = 0;
+            int done = 0;
+            while (submitted < groups.size() || pending > 0) {
+                while (submitted < groups.size() && pending < parallelism) {
+                    futures.add(completionService.submit(new GroupCallable(groups.get(submitted),
+                                                                           job,
+                                                                           runningGroups)));
+                    submitted++;
+                    pending++;
+                }
+                progressIndicator.checkCanceled();
+                final Future<List<ImageInformation>> future = completionService.poll(POLL_INTERVAL_MS,
+                                                                                     TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                pending--;
+                try {
+                    final List<ImageInformation> group = future.get();
+                    done += group.size();
+                    progressIndicator.setText2(group.get(group.size() - 1).getExportName());
+                } catch (ExecutionException e) {
+                    LOGGER.error(e.getCause());
+                }
+                progressIndicator.setFraction((float) done / (float) total);
+            }
+            finished = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        } finally {
+            if (!finished) {
+                // Only this export is cancelled, the pool keeps serving the others
+                runningGroups.cancel();
+                for (Future<List<ImageInformation>> future : futures) {
+                    future.cancel(true);
+                }
+                // Workers may ignore the interrupt, e.g. while encoding
+                runningGroups.awaitFinished();
+            }
+        }
+    }
+
+    public interface ExportJob {
+        void export(ImageInformation information) throws Exception;
+    }
+
+    public interface GroupExportJob {
+        void export(List<ImageInformation> group) throws Exception;
+    }
+
+    /**
+     * Counts the groups of one export which are being processed. A cancelled future doesn't wait for its worker, so
+     * this is what a cancelled export waits for.
+     */
+    private static class RunningGroups {
+        private int running;
+        private boolean cancelled;
+
+        private synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+
+        private synchronized void finish() {
+            running--;
+            notifyAll();
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+        }
+
+        private synchronized void awaitFinished() {
+            boolean interrupted = false;
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class GroupCallable implements Callable<List<ImageInformation>> {
+        private final List<ImageInformation> group;
+        private final GroupExportJob job;
+        private final RunningGroups runningGroups;
+
+        private GroupCallable(List<ImageInformation> group, GroupExportJob job, RunningGroups runningGroups) {
+            this.group = group;
+            this.job = job;
+            this.runningGroups = runningGroups;
+        }
+
+        @Override
+        public List<ImageInformation> call() {
+            if (progressIndicator.isCanceled() || !runningGroups.start()) {
+                return group;
+            }
+            try {
+                job.export(group);
+            } catch (Exception e) {
+                LOGGER.error(e);
+            } finally {
+                runningGroups.finish();
+            }
+            return group;
+        }
+    }
+}
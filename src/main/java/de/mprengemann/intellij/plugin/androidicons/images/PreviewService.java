@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.UIUtil;
+import de.mprengemann.intellij.plugin.androidicons.model.Format;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackArchive;
+import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the preview images of the dialogs off the EDT. Every label has at most one pending request, a newer
+ * request for the same label cancels the older one. Rendered previews are cached by file, modification time,
+ * container size and format.
+ */
+public class PreviewService {
+
+    private static final String TAG = PreviewService.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+    private static final String REQUEST_KEY = PreviewService.class.getName() + ".request";
+    private static final int MAX_CACHED_PREVIEWS = 64;
+
+    private static PreviewService instance;
+
+    private final ExecutorService executor;
+    private final Map<PreviewKey, ImageIcon> cache;
+
+    private PreviewService() {
+        executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ADI preview", 1);
+        cache = new LinkedHashMap<PreviewKey, ImageIcon>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PreviewKey, ImageIcon> eldest) {
+                return size() > MAX_CACHED_PREVIEWS;
+            }
+        };
+    }
+
+    public static synchronized PreviewService getInstance() {
+        if (instance == null) {
+            instance = new PreviewService();
+        }
+        return instance;
+    }
+
+    /**
+     * Has to be called on the EDT. The icon of the container is replaced once the preview is rendered, it is kept
+     * as is if the file can't be read.
+     */
+    public void updatePreview(JLabel imageContainer, File imageFile, Format format) {
+        cancelPending(imageContainer);
+        if (imageFile == null || !imageFile.exists()) {
+            return;
+        }
+        final Dimension size = imageContainer.getPreferredSize();
+        update(imageContainer, new PreviewKey(imageFile, null, size.width, size.height, format));
+    }
+
+    /**
+     * Same as {@link #updatePreview(JLabel, File, Format)} for an image of the icon pack archive, which is streamed
+     * from the archive instead of a file.
+     */
+    public void updateIconPackPreview(JLabel imageContainer, String iconPackPath, Format format) {
+        cancelPending(imageContainer);
+        if (iconPackPath == null) {
+            return;
+        }
+        final Dimension size = imageContainer.getPreferredSize();
+        update(imageContainer, new PreviewKey(null, iconPackPath, size.width, size.height, format));
+    }
+
+    private static void cancelPending(JLabel imageContainer) {
+        final Request previous = (Request) imageContainer.getClientProperty(REQUEST_KEY);
+        if (previous != null) {
+            previous.cancel();
+            imageContainer.putClientProperty(REQUEST_KEY, null);
+        }
+    }
+
+    private void update(JLabel imageContainer, PreviewKey key) {
+        final ImageIcon cachedPreview;
+        synchronized (cache) {
+            cachedPreview = cache.get(key);
+        }
+        if (cachedPreview != null) {
+            imageContainer.setIcon(cachedPreview);
+            return;
+        }
+        final Request request = new Request(imageContainer, key);
+        imageContainer.putClientProperty(REQUEST_KEY, request);
+        request.future = executor.submit(request);
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static BufferedImage render(PreviewKey key) {
+        BufferedImage img = null;
+        try {
+            img = key.read();
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        }
+        if (img == null) {
+            return null;
+        }
+        int imageWidth = img.getWidth();
+        int imageHeight = img.getHeight();
+        int imageViewWidth = key.width;
+        int imageViewHeight = key.height;
+        double factor = ImageUtils.getScaleFactorToFit(new Dimension(imageWidth, imageHeight),
+                                                       new Dimension(imageViewWidth, imageViewHeight));
+        imageWidth = (int) (factor * imageWidth);
+        imageHeight = (int) (factor * imageHeight);
+        if (imageWidth <= 0 || imageHeight <= 0 ||
+            imageViewWidth <= 0 || imageViewHeight <= 0) {
+            return null;
+        }
+        BufferedImage tmp = UIUtil.createImage(imageViewWidth, imageViewHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = tmp.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        int x = (imageViewWidth - imageWidth) / 2;
+        int y = (imageViewHeight - imageHeight) / 2;
+        if (key.format == Format.PNG || key.format == Format.XML) {
+            g2.drawImage(img, x, y, imageWidth, imageHeight, null);
+        } else {
+            g2.drawImage(img, x, y, imageWidth, imageHeight, Color.WHITE, null);
+        }
+        g2.dispose();
+        return tmp;
+    }
+
+    private class Request implements Runnable {
+        private final JLabel imageContainer;
+        private final PreviewKey key;
+        private volatile boolean canceled;
+        private Future<?> future;
+
+        Request(JLabel imageContainer, PreviewKey key) {
+            this.imageContainer = imageContainer;
+            this.key = key;
+        }
+
+        void cancel() {
+            canceled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (canceled) {
+                return;
+            }
+            final BufferedImage preview = render(key);
+            if (preview == null || canceled) {
+                return;
+            }
+            final ImageIcon icon = new ImageIcon(preview);
+            synchronized (cache) {
+                cache.put(key, icon);
+            }
+            UIUtil.invokeLaterIfNeeded(new Runnable() {
+                @Override
+                public void run() {
+                    if (canceled || imageContainer.getClientProperty(REQUEST_KEY) != Request.this) {
+                        return;
+                    }
+                    imageContainer.putClientProperty(REQUEST_KEY, null);
+                    imageContainer.setIcon(icon);
+                }
+            });
+        }
+    }
+
+    private static class PreviewKey {
+        private final File file;
+        private final String iconPackPath;
+        private final long lastModified;
+        private final int width;
+        private final int height;
+        private final Format format;
+
+        PreviewKey(File file, String iconPackPath, int width, int height, Format format) {
+            this.file = file != null ? file.getAbsoluteFile() : null;
+            this.iconPackPath = iconPackPath;
+            this.lastModified = file != null ? file.lastModified() : 0;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+        }
+
+        BufferedImage read() throws IOException {
+            if (file != null) {
+                return ImageIO.read(file);
+            }
+            final InputStream stream = IconPackArchive.getInstance().openStream(iconPackPath);
+            if (stream == null) {
+                return null;
+            }
+            try {
+                return ImageIO.read(stream);
+            } finally {
+                stream.close();
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final PreviewKey that = (PreviewKey) o;
+            return lastModified == that.lastModified &&
+                   width == that.width &&
+                   height == that.height &&
+                   (file != null ? file.equals(that.file) : that.file == null) &&
+                   (iconPackPath != null ? iconPackPath.equals(that.iconPackPath) : that.iconPackPath == null) &&
+                   format == that.format;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = file != null ? file.hashCode() : 0;
+            result = 31 * result + (iconPackPath != null ? iconPackPath.hashCode() : 0);
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + (format != null ? format.hashCode() : 0);
+            return result;
+        }
+    }
+}
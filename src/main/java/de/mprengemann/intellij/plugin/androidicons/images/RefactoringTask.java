@@ -14,6 +14,7 @@
 package de.mprengemann.intellij.plugin.androidicons.images;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
@@ -21,26 +22,26 @@ import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAwareRunnable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.vfs.LocalFileSystem;
-import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiDirectory;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiManager;
 import com.intellij.util.ui.UIUtil;
 import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+import de.mprengemann.intellij.plugin.androidicons.util.AtomicFileUtils;
 import de.mprengemann.intellij.plugin.androidicons.util.ExportNameUtils;
 import de.mprengemann.intellij.plugin.androidicons.util.ImageUtils;
-import de.mprengemann.intellij.plugin.androidicons.util.RunnableUtils;
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class RefactoringTask extends Task.Backgroundable {
 
@@ -48,43 +49,228 @@ public class RefactoringTask extends Task.Backgroundable {
     private static final Logger LOGGER = Logger.getInstance(TAG);
     private Project project;
     private List<ImageInformation> imageInformationList = new ArrayList<ImageInformation>();
-    private int selection;
+    private Set<ImageInformation> conflicts = Collections.emptySet();
     private ProgressIndicator progressIndicator;
+    private File stagingDir;
+    private DecodedImageCache decodedImageCache;
+    private boolean directWrite;
+    private Set<ImageInformation> directWriteImages = Collections.emptySet();
+    private Map<String, ExportManifest> manifests;
+    private Map<ImageInformation, String> inputHashes;
+    private Map<ImageInformation, String> outputHashes;
 
     public RefactoringTask(Project project) {
         super(project, "Importing Images...", true);
         this.project = project;
     }
 
-    private void refactor() throws IOException, ProcessCanceledException {
+    private void refactor(List<ImageInformation> exportImages) throws IOException, ProcessCanceledException {
         progressIndicator.checkCanceled();
         progressIndicator.setIndeterminate(false);
-        for (int i = 0; i < imageInformationList.size(); i++) {
-            ImageInformation information = imageInformationList.get(i);
-            progressIndicator.setText2(information.getExportName());
-            progressIndicator.checkCanceled();
-            if (information.isVector()) {
-                copyTempImage(information);
+        final List<ImageInformation> stagedImages = new ArrayList<ImageInformation>();
+        directWriteImages = Collections.newSetFromMap(new IdentityHashMap<ImageInformation, Boolean>());
+        for (ImageInformation information : exportImages) {
+            if (directWrite && !conflicts.contains(information)) {
+                directWriteImages.add(information);
             } else {
-                exportTempImage(information);
+                stagedImages.add(information);
+            }
+        }
+        final List<File> directWriteDirs = new ArrayList<File>();
+        for (ImageInformation information : directWriteImages) {
+            final File directory = information.getTargetFile().getParentFile();
+            if (!directWriteDirs.contains(directory)) {
+                directWriteDirs.add(directory);
             }
-            progressIndicator.setFraction((float) (i + 1) / (float) imageInformationList.size());
+        }
+
+        decodedImageCache = new DecodedImageCache();
+        try {
+            new ParallelExporter(progressIndicator).exportGroups(getExportGroups(exportImages), new ParallelExporter.GroupExportJob() {
+                @Override
+                public void export(List<ImageInformation> group) {
+                    if (group.size() > 1) {
+                        exportCascadedTempImages(group);
+                        return;
+                    }
+                    final ImageInformation information = group.get(0);
+                    if (information.isVector()) {
+                        copyTempImage(information);
+                    } else {
+                        exportTempImage(information);
+                    }
+                }
+            });
+        } finally {
+            decodedImageCache.clear();
+            decodedImageCache = null;
         }
 
         progressIndicator.setIndeterminate(true);
         progressIndicator.setText2("Finishing");
         UIUtil.invokeLaterIfNeeded(new DumbAwareRunnable() {
             public void run() {
+                final long start = System.nanoTime();
+                long refreshTime = 0;
                 try {
-                    move(project, imageInformationList);
-                    LocalFileSystem.getInstance().refresh(true);
+                    final VfsRefreshBatch refreshBatch = new VfsRefreshBatch();
+                    for (File directory : directWriteDirs) {
+                        refreshBatch.addDirectory(directory);
+                    }
+                    for (ImageInformation information : stagedImages) {
+                        final File targetDir = information.getTargetFile().getParentFile();
+                        FileUtils.forceMkdir(targetDir);
+                        refreshBatch.addDirectory(targetDir);
+                    }
+                    refreshTime = refreshBatch.refresh();
+                    if (stagedImages.isEmpty()) {
+                        ImageInformation.deleteStagingDir(stagingDir);
+                        onPostExecute();
+                    } else {
+                        move(project, stagedImages);
+                    }
                 } catch (IOException e) {
                     LOGGER.error(e);
                 }
+                LOGGER.info(String.format("Spent %d ms in VFS work, %d ms of it refreshing",
+                                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                                          refreshTime));
+                ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateManifests();
+                    }
+                });
             }
         });
     }
 
+    private List<ImageInformation> getChangedImages() {
+        progressIndicator.setText2("Checking for changes");
+        manifests = new HashMap<String, ExportManifest>();
+        inputHashes = new IdentityHashMap<ImageInformation, String>();
+        outputHashes = Collections.synchronizedMap(new IdentityHashMap<ImageInformation, String>());
+        final Map<String, String> sourceHashes = new HashMap<String, String>();
+        final List<ImageInformation> changedImages = new ArrayList<ImageInformation>();
+        for (ImageInformation information : imageInformationList) {
+            progressIndicator.checkCanceled();
+            try {
+                String sourceHash = sourceHashes.get(information.getSourceKey());
+                if (sourceHash == null) {
+                    sourceHash = ExportManifest.hashStream(information.openImageStream());
+                    sourceHashes.put(information.getSourceKey(), sourceHash);
+                }
+                final String inputHash = ExportManifest.hashInputs(information, sourceHash);
+                if (getManifest(information).isUpToDate(information, inputHash)) {
+                    continue;
+                }
+                inputHashes.put(information, inputHash);
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            }
+            changedImages.add(information);
+        }
+        LOGGER.info(String.format("Skipping %d of %d unchanged images",
+                                  imageInformationList.size() - changedImages.size(),
+                                  imageInformationList.size()));
+        return changedImages;
+    }
+
+    /**
+     * Asks how to handle every image whose target file already exists, before any of them is decoded. Skipped
+     * images are removed from the returned list, the remaining conflicts replace their target when copied.
+     */
+    private List<ImageInformation> resolveConflicts(List<ImageInformation> images) {
+        progressIndicator.setText2("Checking for existing files");
+        final List<ImageInformation> scannedConflicts = new ExportConflictScanner().scan(images);
+        conflicts = Collections.newSetFromMap(new IdentityHashMap<ImageInformation, Boolean>());
+        if (scannedConflicts.isEmpty()) {
+            return images;
+        }
+        final Set<ImageInformation> skipped = Collections.newSetFromMap(new IdentityHashMap<ImageInformation, Boolean>());
+        ApplicationManager.getApplication().invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                final String[] options = scannedConflicts.size() == 1
+                                         ? new String[] {"Overwrite", "Skip"}
+                                         : new String[] {"Overwrite", "Skip", "Overwrite for all", "Skip for all"};
+                int choice = -1;
+                for (ImageInformation information : scannedConflicts) {
+                    int selection = choice;
+                    if (selection == -1) {
+                        final String message = String.format("File '%s' already exists in directory '%s'",
+                                                             information.getTargetFile().getName(),
+                                                             information.getTargetFile().getParent());
+                        selection = Messages.showDialog(message, "Copy", options, 0, Messages.getQuestionIcon());
+                        if (selection > 1) {
+                            choice = selection % 2;
+                            selection = choice;
+                        }
+                    }
+                    if (selection == 0) {
+                        conflicts.add(information);
+                    } else {
+                        skipped.add(information);
+                    }
+                }
+            }
+        }, ModalityState.defaultModalityState());
+        if (skipped.isEmpty()) {
+            return images;
+        }
+        final List<ImageInformation> resolvedImages = new ArrayList<ImageInformation>();
+        for (ImageInformation information : images) {
+            if (!skipped.contains(information)) {
+                resolvedImages.add(information);
+            }
+        }
+        LOGGER.info(String.format("Skipping %d existing images", skipped.size()));
+        return resolvedImages;
+    }
+
+    private ExportManifest getManifest(ImageInformation information) {
+        ExportManifest manifest = manifests.get(information.getExportPath());
+        if (manifest == null) {
+            manifest = ExportManifest.getInstance(new File(information.getExportPath()));
+            manifests.put(information.getExportPath(), manifest);
+        }
+        return manifest;
+    }
+
+    private void updateManifests() {
+        synchronized (outputHashes) {
+            for (Map.Entry<ImageInformation, String> entry : outputHashes.entrySet()) {
+                final ImageInformation information = entry.getKey();
+                getManifest(information).record(information, inputHashes.get(information), entry.getValue());
+            }
+        }
+        for (ExportManifest manifest : manifests.values()) {
+            manifest.save();
+        }
+    }
+
+    private List<List<ImageInformation>> getExportGroups(List<ImageInformation> exportImages) {
+        final List<List<ImageInformation>> groups = new ArrayList<List<ImageInformation>>();
+        final Map<String, List<ImageInformation>> chains = new HashMap<String, List<ImageInformation>>();
+        for (ImageInformation information : exportImages) {
+            if (information.getAlgorithm() != ResizeAlgorithm.CASCADE ||
+                information.isVector() ||
+                information.isNinePatch()) {
+                groups.add(Collections.singletonList(information));
+                continue;
+            }
+            final String key = information.getSourceKey() + "|" + information.getMethod();
+            List<ImageInformation> chain = chains.get(key);
+            if (chain == null) {
+                chain = new ArrayList<ImageInformation>();
+                chains.put(key, chain);
+                groups.add(chain);
+            }
+            chain.add(information);
+        }
+        return groups;
+    }
+
     public void addImage(ImageInformation imageInformation) {
         if (imageInformation == null) {
             return;
@@ -92,6 +278,15 @@ public class RefactoringTask extends Task.Backgroundable {
         imageInformationList.add(imageInformation);
     }
 
+    /**
+     * Lets images whose target file does not exist yet skip the temp directory. They are encoded straight into the
+     * target directory, so they are not part of the undoable copy command. Existing targets still go through the
+     * staged copy to keep the overwrite prompt.
+     */
+    public void setDirectWrite(boolean directWrite) {
+        this.directWrite = directWrite;
+    }
+
     protected void onPreExecute() {}
 
     @Override
@@ -101,14 +296,35 @@ public class RefactoringTask extends Task.Backgroundable {
         }
         this.progressIndicator = progressIndicator;
         onPreExecute();
+        try {
+            stagingDir = ImageInformation.createStagingDir("export-");
+        } catch (IOException e) {
+            LOGGER.error(e);
+            return;
+        }
+        final List<ImageInformation> stagedImageInformation = new ArrayList<ImageInformation>(imageInformationList.size());
+        for (ImageInformation information : imageInformationList) {
+            stagedImageInformation.add(ImageInformation.newBuilder(information).setStagingDir(stagingDir).build());
+        }
+        imageInformationList = stagedImageInformation;
+        final List<ImageInformation> exportImages;
+        try {
+            progressIndicator.checkCanceled();
+            // Conflicts are resolved outside of the read action, the dialogs need the EDT
+            exportImages = resolveConflicts(getChangedImages());
+        } catch (ProcessCanceledException e) {
+            ImageInformation.deleteStagingDir(stagingDir);
+            return;
+        }
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             @Override
             public void run() {
                 try {
-                    refactor();
+                    refactor(exportImages);
                 } catch (ProcessCanceledException e) {
-                    FileUtils.deleteQuietly(ImageInformation.getTempDir());
+                    ImageInformation.deleteStagingDir(stagingDir);
                 } catch (Exception e) {
+                    ImageInformation.deleteStagingDir(stagingDir);
                     LOGGER.error(e);
                 }
             }
@@ -117,149 +333,76 @@ public class RefactoringTask extends Task.Backgroundable {
 
     protected void onPostExecute() {}
 
-    private boolean checkFileExist(@Nullable PsiDirectory targetDirectory,
-                                   int[] choice,
-                                   PsiFile file,
-                                   String name,
-                                   String title) {
-        if (targetDirectory == null) {
-            return false;
-        }
-        final PsiFile existing = targetDirectory.findFile(name);
-        if (existing == null || existing.equals(file)) {
-            return false;
-        }
-        int selection;
-        if (choice == null || choice[0] == -1) {
-            final String message = String.format("File '%s' already exists in directory '%s'",
-                                           name,
-                                           targetDirectory.getVirtualFile().getPath());
-            String[] options = choice == null ? new String[] {"Overwrite", "Skip"}
-                                              : new String[] {"Overwrite", "Skip", "Overwrite for all", "Skip for all"};
-            selection = Messages.showDialog(message, title, options, 0, Messages.getQuestionIcon());
-            if (selection == 2 || selection == 3) {
-                this.selection = selection;
-            }
-        } else {
-            selection = choice[0];
-        }
-
-        if (choice != null && selection > 1) {
-            choice[0] = selection % 2;
-            selection = choice[0];
+    private void move(Project project, List<ImageInformation> scalingInformationList) throws IOException {
+        final ExportCommit commit = new ExportCommit(project,
+                                                     ExportNameUtils.getExportDescription(scalingInformationList),
+                                                     stagingDir);
+        for (ImageInformation information : scalingInformationList) {
+            commit.add(information.getTempImage(), information.getTargetFile(), conflicts.contains(information));
         }
-
-        if (selection == 0 && file != existing) {
-            existing.delete();
-        } else {
-            return true;
+        try {
+            commit.commit();
+        } finally {
+            ImageInformation.deleteStagingDir(stagingDir);
         }
-
-        return false;
+        onPostExecute();
     }
 
-    private void copy(Project project,
-                      String description,
-                      List<File> sources,
-                      List<File> targets) throws IOException {
-        final PsiManager instance = PsiManager.getInstance(project);
-        final List<PsiFile> files = new ArrayList<PsiFile>();
-        final List<PsiDirectory> dirs = new ArrayList<PsiDirectory>();
-        final List<String> names = new ArrayList<String>();
-
-        for (File source : sources) {
-            LocalFileSystem.getInstance().findFileByIoFile(source);
-            final VirtualFile vFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(source);
-            if (vFile != null) {
-                PsiFile item = instance.findFile(vFile);
-                if (item != null) {
-                    files.add(item);
-                }
+    private void exportTempImage(final ImageInformation information) {
+        try {
+            BufferedImage source = decodedImageCache.get(information);
+            BufferedImage resizeImageJpg;
+            if (information.isNinePatch()) {
+                resizeImageJpg = ImageUtils.resizeNinePatchImage(source, information);
+            } else {
+                resizeImageJpg = ImageUtils.resizeNormalImage(source, information);
             }
+            saveImage(resizeImageJpg, information);
+        } catch (Exception e) {
+            LOGGER.error(e);
         }
+    }
 
-        for (File target : targets) {
-            VirtualFile targetDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(target.getParentFile());
-            if (targetDir == null) {
-                FileUtils.forceMkdir(target.getParentFile());
-                targetDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(target.getParentFile());
-            }
-            if (targetDir != null) {
-                final PsiDirectory dir = instance.findDirectory(targetDir);
-                if (dir != null) {
-                    dirs.add(dir);
-                    names.add(target.getName());
-                }
+    private void exportCascadedTempImages(final List<ImageInformation> chain) {
+        try {
+            BufferedImage source = decodedImageCache.get(chain.get(0));
+            List<BufferedImage> resizedImages = ImageUtils.resizeCascade(source, chain);
+            for (int i = 0; i < chain.size(); i++) {
+                saveImage(resizedImages.get(i), chain.get(i));
             }
+        } catch (Exception e) {
+            LOGGER.error(e);
         }
-
-        if (files.size() == dirs.size() && !files.isEmpty()) {
-            selection = -1;
-            RunnableUtils.runWriteCommand(project, new Runnable() {
-                @Override
-                public void run() {
-                    PsiFile file;
-                    PsiDirectory dir;
-                    String name;
-                    for (int i = 0; i < files.size(); i++) {
-                        file = files.get(i);
-                        dir = dirs.get(i);
-                        name = names.get(i);
-                        if (checkFileExist(dir, new int[] {selection}, file, name, "Copy")) {
-                            continue;
-                        }
-                        dir.copyFileFrom(name, file);
-                    }
-                }
-            }, description);
-            return;
-        }
-
-        throw new FileNotFoundException(sources.toString());
     }
 
-    private void move(Project project, List<ImageInformation> scalingInformationList) throws IOException {
-        List<File> tempFiles = new ArrayList<File>();
-        List<File> targets = new ArrayList<File>();
-
-        for (ImageInformation information : scalingInformationList) {
-            tempFiles.add(information.getTempImage());
-            targets.add(information.getTargetFile());
+    private void saveImage(BufferedImage image, ImageInformation information) throws IOException {
+        if (directWriteImages.contains(information)) {
+            recordOutput(information, ImageUtils.saveImageTargetFile(image, information));
+        } else {
+            recordOutput(information, ImageUtils.saveImageTempFile(image, information));
         }
-
-        final String description = ExportNameUtils.getExportDescription(scalingInformationList);
-        copy(project, description, tempFiles, targets);
-        RunnableUtils.runWriteCommand(project, new Runnable() {
-            @Override
-            public void run() {
-                FileUtils.deleteQuietly(ImageInformation.getTempDir());
-                onPostExecute();
-            }
-        }, description);
     }
 
-    private void exportTempImage(final ImageInformation information) {
-        try {
-            BufferedImage resizeImageJpg;
-            if (information.isNinePatch()) {
-                resizeImageJpg = ImageUtils.resizeNinePatchImage(information);
-            } else {
-                resizeImageJpg = ImageUtils.resizeNormalImage(information);
-            }
-            ImageUtils.saveImageTempFile(resizeImageJpg, information);
-        } catch (Exception e) {
-            LOGGER.error(e);
+    private void recordOutput(ImageInformation information, File output) throws IOException {
+        if (inputHashes.containsKey(information)) {
+            outputHashes.put(information, ExportManifest.hashFile(output));
         }
     }
 
     private void copyTempImage(ImageInformation information) {
         try {
+            if (directWriteImages.contains(information)) {
+                copySource(information, information.getTargetFile());
+                recordOutput(information, information.getTargetFile());
+                return;
+            }
             File exportFile = information.getTempImage();
             if (exportFile != null) {
                 if (!exportFile.getParentFile().exists()) {
                     FileUtils.forceMkdir(exportFile.getParentFile());
                 }
-                FileUtils.copyFile(information.getImageFile(), information.getTempImage());
+                copySource(information, information.getTempImage());
+                recordOutput(information, information.getTempImage());
             } else {
                 throw new IOException("Couldn't find .idea path.");
             }
@@ -267,4 +410,13 @@ public class RefactoringTask extends Task.Backgroundable {
             LOGGER.error(e);
         }
     }
+
+    private static void copySource(ImageInformation information, File target) throws IOException {
+        final InputStream source = information.openImageStream();
+        try {
+            AtomicFileUtils.copy(source, target);
+        } finally {
+            source.close();
+        }
+    }
 }
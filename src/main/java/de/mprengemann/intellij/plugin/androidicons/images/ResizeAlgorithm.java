@@ -20,7 +20,8 @@ import java.util.List;
 
 public enum ResizeAlgorithm {
     SCALR("Scalr"),
-    THUMBNAILATOR("Thumbnailator");
+    THUMBNAILATOR("Thumbnailator"),
+    CASCADE("Scalr (Cascaded)");
 
     private final String name;
 
@@ -32,6 +33,7 @@ public enum ResizeAlgorithm {
         List<String> methods;
         switch (this) {
             case SCALR:
+            case CASCADE:
                 methods = Arrays.asList("Automatic",
                                         "Speed",
                                         "Balanced",
@@ -50,6 +52,7 @@ public enum ResizeAlgorithm {
     public Object getMethod(String method) {
         switch (this) {
             case SCALR:
+            case CASCADE:
                 if ("Automatic".equals(method)) {
                     return Scalr.Method.AUTOMATIC;
                 } else if ("Speed".equals(method)) {
@@ -72,6 +75,7 @@ public enum ResizeAlgorithm {
     public String getPrettyMethod(Object method) {
         switch (this) {
             case SCALR:
+            case CASCADE:
                 Scalr.Method scalrMethod = (Scalr.Method) method;
                 switch (scalrMethod) {
                     case AUTOMATIC:
@@ -103,6 +107,8 @@ public enum ResizeAlgorithm {
             return SCALR;
         } else if (THUMBNAILATOR.name.equals(algorithm)) {
             return THUMBNAILATOR;
+        } else if (CASCADE.name.equals(algorithm)) {
+            return CASCADE;
         }
         throw new IllegalArgumentException("Algorithm doesn't exist: " + algorithm);
     }
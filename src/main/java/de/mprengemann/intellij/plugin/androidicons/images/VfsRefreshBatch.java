@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.images;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Collects the directories an export wrote to and brings the VFS up to date with all of them in a single pass,
+ * instead of refreshing file by file or the whole local file system.
+ */
+public class VfsRefreshBatch {
+
+    private static final String TAG = VfsRefreshBatch.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+
+    private final Set<File> directories = new LinkedHashSet<File>();
+
+    public void addDirectory(File directory) {
+        if (directory != null) {
+            directories.add(directory);
+        }
+    }
+
+    /**
+     * Synchronously refreshes the children of all collected directories. Directories the VFS doesn't know yet are
+     * picked up through their closest known ancestor.
+     *
+     * @return the time spent in milliseconds
+     */
+    public long refresh() {
+        if (directories.isEmpty()) {
+            return 0;
+        }
+        final long start = System.nanoTime();
+        final LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        final Set<VirtualFile> files = new LinkedHashSet<VirtualFile>();
+        for (File directory : directories) {
+            File file = directory;
+            VirtualFile virtualFile = fileSystem.findFileByIoFile(file);
+            while (virtualFile == null && file.getParentFile() != null) {
+                file = file.getParentFile();
+                virtualFile = fileSystem.findFileByIoFile(file);
+            }
+            if (virtualFile != null) {
+                files.add(virtualFile);
+            }
+        }
+        VfsUtil.markDirtyAndRefresh(false, false, true, files.toArray(new VirtualFile[files.size()]));
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info(format("Refreshed %d directories for %d touched ones in %d ms",
+                           files.size(),
+                           directories.size(),
+                           elapsed));
+        directories.clear();
+        return elapsed;
+    }
+}
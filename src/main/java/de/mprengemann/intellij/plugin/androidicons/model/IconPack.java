@@ -17,7 +17,7 @@ public class IconPack {
         this.url = url;
         this.path = path;
         this.assets = assets;
-        this.categories = categories;
+        this.categories = ImageAssetPool.getList(categories);
     }
 
     public String getName() {
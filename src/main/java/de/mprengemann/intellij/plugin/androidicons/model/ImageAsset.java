@@ -3,11 +3,15 @@ package de.mprengemann.intellij.plugin.androidicons.model;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 public class ImageAsset implements Comparable<ImageAsset>,
                                    Serializable {
 
+    // Selected assets are stored serialized in the project settings, this is the id of the original class
+    private static final long serialVersionUID = 2735898319317878254L;
+
     private final String name;
     private final String pack;
     private final String category;
@@ -18,15 +22,15 @@ public class ImageAsset implements Comparable<ImageAsset>,
     public ImageAsset(String name,
                       String pack,
                       String category,
-                      List<Resolution> resolutions,
+                      Collection<Resolution> resolutions,
                       List<String> colors,
                       List<String> sizes) {
         this.name = name;
-        this.pack = pack;
-        this.category = category;
-        this.resolutions = resolutions;
-        this.colors = colors;
-        this.sizes = sizes;
+        this.pack = ImageAssetPool.getString(pack);
+        this.category = ImageAssetPool.getString(category);
+        this.resolutions = ImageAssetPool.getResolutions(resolutions);
+        this.colors = ImageAssetPool.getList(colors);
+        this.sizes = ImageAssetPool.getList(sizes);
     }
 
     public String getName() {
@@ -53,6 +57,13 @@ public class ImageAsset implements Comparable<ImageAsset>,
         return sizes;
     }
 
+    /**
+     * Replaces the copies of a deserialized asset by the shared instances.
+     */
+    private Object readResolve() {
+        return new ImageAsset(name, pack, category, resolutions, colors, sizes);
+    }
+
     @Override
     public String toString() {
         return name;
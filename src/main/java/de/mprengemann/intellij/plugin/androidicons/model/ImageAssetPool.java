@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical instances of the values shared between the assets of the icon packs. Thousands of assets only use a
+ * handful of different color, size and resolution combinations, so every asset references the same immutable
+ * instance instead of holding its own copy.
+ */
+final class ImageAssetPool {
+
+    private static final ConcurrentMap<String, String> STRINGS = new ConcurrentHashMap<String, String>();
+    private static final ConcurrentMap<List<String>, List<String>> LISTS =
+        new ConcurrentHashMap<List<String>, List<String>>();
+    private static final ConcurrentMap<Set<Resolution>, List<Resolution>> RESOLUTIONS =
+        new ConcurrentHashMap<Set<Resolution>, List<Resolution>>();
+
+    private ImageAssetPool() {
+    }
+
+    static String getString(String value) {
+        if (value == null) {
+            return null;
+        }
+        final String canonical = STRINGS.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+
+    static List<String> getList(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        final List<String> canonical = LISTS.get(values);
+        if (canonical != null) {
+            return canonical;
+        }
+        final List<String> copy = new ArrayList<String>(values.size());
+        for (String value : values) {
+            copy.add(getString(value));
+        }
+        final List<String> list = Collections.unmodifiableList(copy);
+        final List<String> previous = LISTS.putIfAbsent(list, list);
+        return previous != null ? previous : list;
+    }
+
+    /**
+     * @return the resolutions without duplicates in the order of {@link Resolution}
+     */
+    static List<Resolution> getResolutions(Collection<Resolution> values) {
+        if (values == null) {
+            return null;
+        }
+        if (values instanceof Set) {
+            final List<Resolution> canonical = RESOLUTIONS.get(values);
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+        final Set<Resolution> resolutions = EnumSet.noneOf(Resolution.class);
+        resolutions.addAll(values);
+        final List<Resolution> canonical = RESOLUTIONS.get(resolutions);
+        if (canonical != null) {
+            return canonical;
+        }
+        final List<Resolution> list = Collections.unmodifiableList(new ArrayList<Resolution>(resolutions));
+        final List<Resolution> previous = RESOLUTIONS.putIfAbsent(resolutions, list);
+        return previous != null ? previous : list;
+    }
+}
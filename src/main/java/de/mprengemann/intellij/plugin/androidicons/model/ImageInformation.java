@@ -16,15 +16,27 @@ package de.mprengemann.intellij.plugin.androidicons.model;
 import com.intellij.openapi.application.PathManager;
 import de.mprengemann.intellij.plugin.androidicons.controllers.defaults.DefaultsController;
 import de.mprengemann.intellij.plugin.androidicons.images.ResizeAlgorithm;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackArchive;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 
 public class ImageInformation {
 
     public static final String TARGET_FILE_PATTERN = "%s/%s-%s/%s.%s";
     public static final String TMP_ROOT_DIR = "plugin-images";
+    private static final Set<File> LIVE_STAGING_DIRS = new HashSet<File>();
+    private static boolean staleStagingDirsDeleted;
     private final File imageFile;
+    private final String iconPackPath;
     private final Resolution targetResolution;
     private final float factor;
     private final String exportPath;
@@ -33,10 +45,12 @@ public class ImageInformation {
     private final String exportName;
     private final boolean ninePatch;
     private final boolean vector;
+    private final File stagingDir;
     private ResizeAlgorithm algorithm;
     private Object method;
 
     private ImageInformation(File imageFile,
+                             String iconPackPath,
                              Resolution targetResolution,
                              float factor,
                              String exportPath,
@@ -45,9 +59,11 @@ public class ImageInformation {
                              String exportName,
                              boolean isNinePatch,
                              boolean isVector,
+                             File stagingDir,
                              ResizeAlgorithm algorithm,
                              Object method) {
         this.imageFile = imageFile;
+        this.iconPackPath = iconPackPath;
         this.targetResolution = targetResolution;
         this.factor = factor;
         this.exportPath = exportPath;
@@ -56,6 +72,7 @@ public class ImageInformation {
         this.exportName = exportName;
         this.ninePatch = isNinePatch;
         this.vector = isVector;
+        this.stagingDir = stagingDir;
         this.algorithm = algorithm;
         this.method = method;
     }
@@ -72,16 +89,91 @@ public class ImageInformation {
         return new File(PathManager.getPluginTempPath(), TMP_ROOT_DIR);
     }
 
+    /**
+     * Creates a new, uniquely named directory below {@link #getTempDir()}. Every export stages its files in its own
+     * directory, so concurrent exports never see or delete each other's files. The first call of a session removes
+     * whatever an earlier session left behind after a crash.
+     */
+    public static synchronized File createStagingDir(String prefix) throws IOException {
+        final File tempDir = getTempDir();
+        if (!staleStagingDirsDeleted) {
+            final File[] staleFiles = tempDir.listFiles();
+            if (staleFiles != null) {
+                for (File staleFile : staleFiles) {
+                    if (!LIVE_STAGING_DIRS.contains(staleFile)) {
+                        FileUtils.deleteQuietly(staleFile);
+                    }
+                }
+            }
+            staleStagingDirsDeleted = true;
+        }
+        FileUtils.forceMkdir(tempDir);
+        final File stagingDir = Files.createTempDirectory(tempDir.toPath(), prefix).toFile();
+        LIVE_STAGING_DIRS.add(stagingDir);
+        return stagingDir;
+    }
+
+    public static synchronized void deleteStagingDir(File stagingDir) {
+        if (stagingDir == null) {
+            return;
+        }
+        LIVE_STAGING_DIRS.remove(stagingDir);
+        FileUtils.deleteQuietly(stagingDir);
+    }
+
+    /**
+     * @return the directory the image is staged in before it's copied to its target, a subdirectory of
+     * {@link #getTempDir()} owned by a single export
+     */
+    public File getStagingDir() {
+        return stagingDir != null ? stagingDir : getTempDir();
+    }
+
     public File getTempImage() {
-        return new File(getTempDir(), String.format("%s/%s",
-                                                    targetResolution.toString().toLowerCase(Locale.ENGLISH),
-                                                    exportName));
+        return new File(getStagingDir(), String.format("%s/%s",
+                                                       targetResolution.toString().toLowerCase(Locale.ENGLISH),
+                                                       exportName));
     }
 
+    /**
+     * @return the source image, or null if it's read from the icon pack archive
+     */
     public File getImageFile() {
         return imageFile;
     }
 
+    /**
+     * @return the path of the source image in the icon pack archive, or null if it's a file
+     */
+    public String getIconPackPath() {
+        return iconPackPath;
+    }
+
+    /**
+     * @return a key which is equal for all images sharing the same source
+     */
+    public String getSourceKey() {
+        return imageFile != null ? imageFile.getAbsolutePath() : IconPackArchive.ARCHIVE_NAME + "!/" + iconPackPath;
+    }
+
+    public String getSourceName() {
+        return imageFile != null ? imageFile.getName() : FilenameUtils.getName(iconPackPath);
+    }
+
+    /**
+     * Opens the source image, icon pack images are streamed from the archive without extracting them.
+     */
+    public InputStream openImageStream() throws IOException {
+        if (imageFile != null) {
+            return FileUtils.openInputStream(imageFile);
+        }
+        final InputStream stream = IconPackArchive.getInstance().openStream(iconPackPath);
+        if (stream == null) {
+            throw new FileNotFoundException(IconPackArchive.ARCHIVE_NAME + "!/" + iconPackPath);
+        }
+        return stream;
+    }
+
     public Resolution getTargetResolution() {
         return targetResolution;
     }
@@ -134,6 +226,7 @@ public class ImageInformation {
     public static class Builder {
 
         private File imageFile = null;
+        private String iconPackPath = null;
         private String exportPath = null;
         private String exportName = null;
         private float factor = 1f;
@@ -141,6 +234,7 @@ public class ImageInformation {
         // Optional parameters
         private boolean ninePatch = false;
         private boolean vector = false;
+        private File stagingDir = null;
         private Resolution targetResolution = Resolution.XHDPI;
         private ResizeAlgorithm algorithm = DefaultsController.DEFAULT_ALGORITHM;
         private Object method = DefaultsController.DEFAULT_ALGORITHM.getMethod(DefaultsController.DEFAULT_METHOD);
@@ -152,12 +246,14 @@ public class ImageInformation {
 
         private Builder(ImageInformation imageInformation) {
             this.imageFile = imageInformation.imageFile;
+            this.iconPackPath = imageInformation.iconPackPath;
             this.targetResolution = imageInformation.targetResolution;
             this.factor = imageInformation.factor;
             this.exportPath = imageInformation.exportPath;
             this.exportName = imageInformation.exportName;
             this.ninePatch = imageInformation.ninePatch;
             this.vector = imageInformation.vector;
+            this.stagingDir = imageInformation.stagingDir;
             this.algorithm = imageInformation.algorithm;
             this.method = imageInformation.method;
             this.format = imageInformation.format;
@@ -189,6 +285,11 @@ public class ImageInformation {
             return this;
         }
 
+        public Builder setStagingDir(File stagingDir) {
+            this.stagingDir = stagingDir;
+            return this;
+        }
+
         public Builder setNinePatch(boolean ninePatch) {
             this.ninePatch = ninePatch;
             return setFormat(format);
@@ -206,12 +307,22 @@ public class ImageInformation {
 
         public Builder setImageFile(File imageFile) {
             this.imageFile = imageFile;
+            this.iconPackPath = null;
             if (exportName == null) {
                 exportName = imageFile.getName();
             }
             return this;
         }
 
+        /**
+         * Reads the source image from the icon pack archive instead of a file.
+         */
+        public Builder setIconPackPath(String iconPackPath) {
+            this.iconPackPath = iconPackPath;
+            this.imageFile = null;
+            return this;
+        }
+
         public Builder setFormat(Format format) {
             this.format = isNinePatch() ? Format.PNG : format;
             return this;
@@ -224,6 +335,7 @@ public class ImageInformation {
 
         public ImageInformation build() {
             return new ImageInformation(this.imageFile,
+                                        this.iconPackPath,
                                         this.targetResolution,
                                         this.factor,
                                         this.exportPath,
@@ -232,6 +344,7 @@ public class ImageInformation {
                                         this.exportName,
                                         this.ninePatch,
                                         this.vector,
+                                        this.stagingDir,
                                         this.algorithm,
                                         this.method);
         }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.resources;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import de.mprengemann.intellij.plugin.androidicons.util.AtomicFileUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.lang.String.format;
+
+/**
+ * Read-only store of the bundled icon pack images. "icon_packs.zip" is shipped next to the plugin jar and opened in
+ * place, entries are looked up in its central directory and streamed on demand, so nothing is extracted. If the
+ * packs are bundled unpacked, they are read from the plugin jar itself.
+ * <p>
+ * A replaced archive is closed once the last stream of it is closed, readers which still hold the old instance
+ * continue with the current one.
+ */
+public class IconPackArchive {
+
+    private static final String TAG = IconPackArchive.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getInstance(TAG);
+    public static final String ARCHIVE_NAME = "icon_packs.zip";
+    private static final String VERSION_PROPERTIES = "icon_packs.properties";
+
+    private static IconPackArchive instance;
+    private static boolean copyInProgress;
+
+    private final File file;
+    private final ZipFile zipFile;
+    private int readers;
+    private boolean retired;
+    private boolean closed;
+    private boolean deleteOnClose;
+
+    private IconPackArchive(File file, ZipFile zipFile) {
+        this.file = file;
+        this.zipFile = zipFile;
+    }
+
+    /**
+     * Opens the archive on first access. This only reads its central directory, the archive is never copied here.
+     */
+    public static synchronized IconPackArchive getInstance() {
+        if (instance == null) {
+            final IconPackArchive archive = open();
+            // The plugin jar only serves until the copy of a nested archive is done
+            if (archive.zipFile == null && copyInProgress) {
+                return archive;
+            }
+            instance = archive;
+        }
+        return instance;
+    }
+
+    public static synchronized void release() {
+        if (instance != null) {
+            instance.retire(false);
+            instance = null;
+        }
+    }
+
+    /**
+     * @return true if the archive is nested in the plugin jar, as done by older builds, and not copied out yet
+     */
+    public static boolean isNestedArchiveCopyRequired() {
+        return getShippedArchive() == null &&
+               IconPackArchive.class.getResource(getResourcePath(ARCHIVE_NAME)) != null &&
+               !getNestedArchiveCopy().exists();
+    }
+
+    /**
+     * A zip nested in the plugin jar can't be accessed randomly, so it is copied to the export folder, next to the
+     * copies of previous versions, which are deleted once they aren't read anymore. This takes a while and must only
+     * be called from a background task.
+     */
+    public static void copyNestedArchive() throws IOException {
+        if (getShippedArchive() != null) {
+            return;
+        }
+        final File copy = getNestedArchiveCopy();
+        if (!copy.exists()) {
+            final InputStream bundledArchive = ResourceLoader.getBundledResourceStream(ARCHIVE_NAME);
+            if (bundledArchive == null) {
+                return;
+            }
+            synchronized (IconPackArchive.class) {
+                copyInProgress = true;
+            }
+            try {
+                AtomicFileUtils.copy(bundledArchive, copy);
+            } finally {
+                bundledArchive.close();
+                synchronized (IconPackArchive.class) {
+                    copyInProgress = false;
+                }
+            }
+            LOGGER.info(format("Copied the nested %s to the export folder", ARCHIVE_NAME));
+        }
+        replaceInstance(copy);
+    }
+
+    private static synchronized void replaceInstance(File copy) throws IOException {
+        if (instance == null || !copy.equals(instance.file)) {
+            final IconPackArchive archive = new IconPackArchive(copy, new ZipFile(copy));
+            if (instance != null) {
+                instance.retire(true);
+            }
+            instance = archive;
+        }
+        // Copies of previous versions, an open one is deleted by its instance again once it is closed
+        final File[] files = copy.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            if (name.startsWith(FilenameUtils.getBaseName(ARCHIVE_NAME)) &&
+                name.endsWith(FilenameUtils.EXTENSION_SEPARATOR + FilenameUtils.getExtension(ARCHIVE_NAME)) &&
+                !file.equals(copy)) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private static IconPackArchive open() {
+        File archiveFile = getShippedArchive();
+        if (archiveFile == null && getNestedArchiveCopy().exists()) {
+            archiveFile = getNestedArchiveCopy();
+        }
+        if (archiveFile != null) {
+            try {
+                return new IconPackArchive(archiveFile, new ZipFile(archiveFile));
+            } catch (IOException e) {
+                LOGGER.error(e);
+            }
+        }
+        LOGGER.info("Serving icon packs from the plugin jar");
+        return new IconPackArchive(null, null);
+    }
+
+    private static File getShippedArchive() {
+        final String jarPath = PathManager.getJarPathForClass(IconPackArchive.class);
+        if (jarPath == null) {
+            return null;
+        }
+        final File archiveFile = new File(new File(jarPath).getParentFile(), ARCHIVE_NAME);
+        return archiveFile.isFile() ? archiveFile : null;
+    }
+
+    /**
+     * Named by the version of the bundled packs, so a new version is copied next to the previous one, which may
+     * still be open.
+     */
+    private static File getNestedArchiveCopy() {
+        return new File(ResourceLoader.getExportPath(), format("%s-%s.%s",
+                                                               FilenameUtils.getBaseName(ARCHIVE_NAME),
+                                                               getBundledVersion(),
+                                                               FilenameUtils.getExtension(ARCHIVE_NAME)));
+    }
+
+    private static String getBundledVersion() {
+        final Properties properties = new Properties();
+        final InputStream stream = ResourceLoader.getBundledResourceStream(VERSION_PROPERTIES);
+        if (stream != null) {
+            try {
+                properties.load(stream);
+            } catch (IOException e) {
+                LOGGER.warn(e);
+            } finally {
+                IOUtils.closeQuietly(stream);
+            }
+        }
+        return properties.getProperty("version", "0");
+    }
+
+    public boolean exists(String path) {
+        path = normalize(path);
+        if (zipFile == null) {
+            return IconPackArchive.class.getResource(getResourcePath(path)) != null;
+        }
+        synchronized (this) {
+            if (!closed) {
+                return zipFile.getEntry(path) != null;
+            }
+        }
+        return getInstance().exists(path);
+    }
+
+    /**
+     * @return a stream of the entry, or null if the archive doesn't contain it
+     */
+    public InputStream openStream(String path) throws IOException {
+        path = normalize(path);
+        if (zipFile == null) {
+            return IconPackArchive.class.getResourceAsStream(getResourcePath(path));
+        }
+        synchronized (this) {
+            if (!closed) {
+                final ZipEntry entry = zipFile.getEntry(path);
+                if (entry == null) {
+                    return null;
+                }
+                final InputStream stream = zipFile.getInputStream(entry);
+                readers++;
+                return new FilterInputStream(stream) {
+                    private boolean released;
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            if (!released) {
+                                released = true;
+                                releaseReader();
+                            }
+                        }
+                    }
+                };
+            }
+        }
+        return getInstance().openStream(path);
+    }
+
+    private synchronized void releaseReader() {
+        readers--;
+        if (retired && readers == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Closes the archive now or, if streams of it are still open, once the last one is closed.
+     */
+    private synchronized void retire(boolean delete) {
+        retired = true;
+        deleteOnClose = delete;
+        if (readers == 0) {
+            close();
+        }
+    }
+
+    private void close() {
+        closed = true;
+        if (zipFile == null) {
+            return;
+        }
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            LOGGER.warn(e);
+        }
+        if (deleteOnClose) {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Icon pack paths end with a slash, so paths built from them contain empty segments which don't match any entry.
+     */
+    private static String normalize(String path) {
+        return path.replaceAll("/{2,}", "/");
+    }
+
+    private static String getResourcePath(String path) {
+        return "/assets/" + path;
+    }
+}
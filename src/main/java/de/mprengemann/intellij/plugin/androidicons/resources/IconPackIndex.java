@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.resources;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
+import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary form of content.json, generated at build time. All strings are stored once in a string table, the color
+ * and size lists are shared between assets and resolutions are stored as bitmasks of {@link Resolution#ordinal()}.
+ * <pre>
+ * int magic, int version
+ * int stringCount, UTF[stringCount]
+ * int listCount, { int size, int[size] string } [listCount]
+ * int packCount, {
+ *     int name, int id, int url, int path, int categoryCount, int[categoryCount] category,
+ *     int assetCount, { int name, int pack, int category, int resolutions, int colors, int sizes } [assetCount]
+ * } [packCount]
+ * </pre>
+ */
+public class IconPackIndex {
+
+    public static final String CONTENT_JSON = "content.json";
+    public static final String CONTENT_INDEX = "content.idx";
+    private static final int MAGIC = 0x41444949;
+    private static final int VERSION = 1;
+
+    public static List<IconPack> readJson(Reader reader) {
+        final Type listType = new TypeToken<ArrayList<IconPack>>() {}.getType();
+        GsonBuilder gsonBuilder = new GsonBuilder();
+        gsonBuilder.registerTypeAdapter(Resolution.class, new Resolution.Deserializer());
+        final Gson gson = gsonBuilder.create();
+        final List<IconPack> iconPacks = gson.fromJson(reader, listType);
+
+        // Gson bypasses the constructors, so the packs are created again to share the values of their assets
+        final List<IconPack> result = new ArrayList<IconPack>(iconPacks.size());
+        for (IconPack iconPack : iconPacks) {
+            final List<ImageAsset> assets = new ArrayList<ImageAsset>(iconPack.getAssets().size());
+            for (ImageAsset asset : iconPack.getAssets()) {
+                assets.add(new ImageAsset(asset.getName(),
+                                          asset.getIconPack(),
+                                          asset.getCategory(),
+                                          asset.getResolutions(),
+                                          asset.getColors(),
+                                          asset.getSizes()));
+            }
+            result.add(new IconPack(iconPack.getName(),
+                                    iconPack.getId(),
+                                    iconPack.getUrl(),
+                                    iconPack.getPath(),
+                                    assets,
+                                    iconPack.getCategories()));
+        }
+        return result;
+    }
+
+    public static List<IconPack> read(InputStream inputStream) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported icon pack index");
+            }
+            final String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+            final List<List<String>> lists = new ArrayList<List<String>>();
+            final int listCount = in.readInt();
+            for (int i = 0; i < listCount; i++) {
+                lists.add(Collections.unmodifiableList(Arrays.asList(readStrings(in, strings))));
+            }
+            final Map<Integer, Set<Resolution>> resolutionSets = new HashMap<Integer, Set<Resolution>>();
+            final Resolution[] resolutions = Resolution.values();
+
+            final int packCount = in.readInt();
+            final List<IconPack> iconPacks = new ArrayList<IconPack>(packCount);
+            for (int i = 0; i < packCount; i++) {
+                final String name = strings[in.readInt()];
+                final String id = strings[in.readInt()];
+                final String url = strings[in.readInt()];
+                final String path = strings[in.readInt()];
+                final List<String> categories = new ArrayList<String>(Arrays.asList(readStrings(in, strings)));
+                final int assetCount = in.readInt();
+                final List<ImageAsset> assets = new ArrayList<ImageAsset>(assetCount);
+                for (int j = 0; j < assetCount; j++) {
+                    final String assetName = strings[in.readInt()];
+                    final String pack = strings[in.readInt()];
+                    final String category = strings[in.readInt()];
+                    final int resolutionMask = in.readInt();
+                    Set<Resolution> assetResolutions = resolutionSets.get(resolutionMask);
+                    if (assetResolutions == null) {
+                        assetResolutions = EnumSet.noneOf(Resolution.class);
+                        for (Resolution resolution : resolutions) {
+                            if ((resolutionMask & (1 << resolution.ordinal())) != 0) {
+                                assetResolutions.add(resolution);
+                            }
+                        }
+                        resolutionSets.put(resolutionMask, assetResolutions);
+                    }
+                    assets.add(new ImageAsset(assetName,
+                                              pack,
+                                              category,
+                                              assetResolutions,
+                                              lists.get(in.readInt()),
+                                              lists.get(in.readInt())));
+                }
+                iconPacks.add(new IconPack(name, id, url, path, assets, categories));
+            }
+            return iconPacks;
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void write(List<IconPack> iconPacks, OutputStream outputStream) throws IOException {
+        final Map<String, Integer> strings = new HashMap<String, Integer>();
+        final List<String> stringTable = new ArrayList<String>();
+        final Map<List<String>, Integer> lists = new HashMap<List<String>, Integer>();
+        final List<List<String>> listTable = new ArrayList<List<String>>();
+        for (IconPack iconPack : iconPacks) {
+            intern(strings, stringTable, iconPack.getName(), iconPack.getId(), iconPack.getUrl(), iconPack.getPath());
+            intern(strings, stringTable, iconPack.getCategories().toArray(new String[0]));
+            for (ImageAsset asset : iconPack.getAssets()) {
+                intern(strings, stringTable, asset.getName(), asset.getIconPack(), asset.getCategory());
+                for (List<String> list : Arrays.asList(asset.getColors(), asset.getSizes())) {
+                    intern(strings, stringTable, list.toArray(new String[0]));
+                    if (!lists.containsKey(list)) {
+                        lists.put(list, listTable.size());
+                        listTable.add(list);
+                    }
+                }
+            }
+        }
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stringTable.size());
+            for (String string : stringTable) {
+                out.writeUTF(string);
+            }
+            out.writeInt(listTable.size());
+            for (List<String> list : listTable) {
+                writeStrings(out, strings, list);
+            }
+            out.writeInt(iconPacks.size());
+            for (IconPack iconPack : iconPacks) {
+                out.writeInt(strings.get(iconPack.getName()));
+                out.writeInt(strings.get(iconPack.getId()));
+                out.writeInt(strings.get(iconPack.getUrl()));
+                out.writeInt(strings.get(iconPack.getPath()));
+                writeStrings(out, strings, iconPack.getCategories());
+                out.writeInt(iconPack.getAssets().size());
+                for (ImageAsset asset : iconPack.getAssets()) {
+                    out.writeInt(strings.get(asset.getName()));
+                    out.writeInt(strings.get(asset.getIconPack()));
+                    out.writeInt(strings.get(asset.getCategory()));
+                    int resolutionMask = 0;
+                    for (Resolution resolution : asset.getResolutions()) {
+                        resolutionMask |= 1 << resolution.ordinal();
+                    }
+                    out.writeInt(resolutionMask);
+                    out.writeInt(lists.get(asset.getColors()));
+                    out.writeInt(lists.get(asset.getSizes()));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, List<String> stringTable, String... values) {
+        for (String value : values) {
+            if (!strings.containsKey(value)) {
+                strings.put(value, stringTable.size());
+                stringTable.add(value);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, String[] strings) throws IOException {
+        final String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = strings[in.readInt()];
+        }
+        return values;
+    }
+
+    private static void writeStrings(DataOutputStream out,
+                                     Map<String, Integer> strings,
+                                     List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeInt(strings.get(value));
+        }
+    }
+
+    private IconPackIndex() {
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.resources;
+
+import de.mprengemann.intellij.plugin.androidicons.model.IconPack;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Build time generator of the binary icon pack index, see the generateIconPackIndex task.
+ * <p>
+ * Usage: IconPackIndexWriter &lt;content.json&gt; &lt;content.idx&gt;
+ */
+public class IconPackIndexWriter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: IconPackIndexWriter <content.json> <content.idx>");
+        }
+        final List<IconPack> iconPacks;
+        final Reader reader = new InputStreamReader(new FileInputStream(args[0]), "UTF-8");
+        try {
+            iconPacks = IconPackIndex.readJson(reader);
+        } finally {
+            reader.close();
+        }
+        final File target = new File(args[1]);
+        if (!target.getParentFile().exists() && !target.getParentFile().mkdirs()) {
+            throw new IOException("Couldn't create " + target.getParent());
+        }
+        IconPackIndex.write(iconPacks, new FileOutputStream(target));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Direct access to the pixels of {@link BufferedImage#TYPE_INT_ARGB} images, bypassing the per pixel color model
+ * conversion of getRGB / setRGB.
+ */
+public class ArgbRasters {
+
+    /**
+     * Returns the image itself if it is already TYPE_INT_ARGB, otherwise a converted copy.
+     */
+    public static BufferedImage toIntArgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        final BufferedImage converted = new BufferedImage(image.getWidth(),
+                                                          image.getHeight(),
+                                                          BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    /**
+     * Copies a region between two TYPE_INT_ARGB images row by row.
+     */
+    public static void copy(BufferedImage source,
+                            int sourceX,
+                            int sourceY,
+                            BufferedImage target,
+                            int targetX,
+                            int targetY,
+                            int width,
+                            int height) {
+        final int[] sourceData = getData(source);
+        final int[] targetData = getData(target);
+        final int sourceStride = getStride(source);
+        final int targetStride = getStride(target);
+        int sourceOffset = getOffset(source, sourceX, sourceY);
+        int targetOffset = getOffset(target, targetX, targetY);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(sourceData, sourceOffset, targetData, targetOffset, width);
+            sourceOffset += sourceStride;
+            targetOffset += targetStride;
+        }
+    }
+
+    public static int[] getData(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    public static int getStride(BufferedImage image) {
+        return ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+    }
+
+    public static int getOffset(BufferedImage image, int x, int y) {
+        final Raster raster = image.getRaster();
+        return raster.getDataBuffer().getOffset() +
+               (y - raster.getSampleModelTranslateY()) * getStride(image) +
+               (x - raster.getSampleModelTranslateX());
+    }
+
+    private ArgbRasters() {
+    }
+}
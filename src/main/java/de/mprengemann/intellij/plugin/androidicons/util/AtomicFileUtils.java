@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.util;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files through a hidden sibling temp file which is renamed onto the target afterwards, so the target
+ * directory never contains a partially written file.
+ */
+public class AtomicFileUtils {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public static File createSiblingTempFile(File target) throws IOException {
+        final File directory = target.getParentFile();
+        if (!directory.exists()) {
+            FileUtils.forceMkdir(directory);
+        }
+        return File.createTempFile("." + target.getName() + ".", TEMP_SUFFIX, directory);
+    }
+
+    public static void replace(File tempFile, File target) throws IOException {
+        try {
+            Files.move(tempFile.toPath(),
+                       target.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    public static void copy(File source, File target) throws IOException {
+        final File tempFile = createSiblingTempFile(target);
+        try {
+            FileUtils.copyFile(source, tempFile);
+            replace(tempFile, target);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    public static void copy(InputStream source, File target) throws IOException {
+        final File tempFile = createSiblingTempFile(target);
+        try {
+            FileUtils.copyInputStreamToFile(source, tempFile);
+            replace(tempFile, target);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    private AtomicFileUtils() {
+    }
+}
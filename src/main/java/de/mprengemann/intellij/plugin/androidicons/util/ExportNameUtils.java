@@ -38,7 +38,7 @@ public class ExportNameUtils {
     public static String getExportDescription(List<ImageInformation> scalingInformationList) {
         Set<String> importFileNames = new HashSet<String>();
         for (ImageInformation information : scalingInformationList) {
-            importFileNames.add(information.getImageFile().getName());
+            importFileNames.add(information.getSourceName());
         }
         StringBuilder builder = new StringBuilder("Import of ");
         // No multi import
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Scales the one pixel border of a nine-patch. The four edges are read into a single reusable int[] and the
+ * scaled markers are written straight into the data buffer of the target image, so no intermediate images or boxed
+ * run positions are created.
+ */
+public class NinePatchBorders {
+
+    private static final int ALPHA_MASK = 0xff000000;
+    private static final int MARKER = 0xff000000;
+    private static final int LAYOUT_BOUNDS = 0xffff0000;
+
+    /**
+     * Creates an empty image for content of the given size, with the borders of the source nine-patch scaled to it.
+     */
+    public static BufferedImage createBorderImage(BufferedImage source,
+                                                  int trimmedWidth,
+                                                  int trimmedHeight) throws IOException {
+        final BufferedImage target = new BufferedImage(trimmedWidth + 2,
+                                                       trimmedHeight + 2,
+                                                       BufferedImage.TYPE_INT_ARGB);
+        writeBorders(source, target);
+        return target;
+    }
+
+    /**
+     * Scales the borders of the source nine-patch onto the outermost pixels of the target. The target has to be a
+     * {@link BufferedImage#TYPE_INT_ARGB} image with transparent borders.
+     */
+    public static void writeBorders(BufferedImage source, BufferedImage target) throws IOException {
+        if (target.getType() != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("Target has to be TYPE_INT_ARGB");
+        }
+        final int cutW = source.getWidth() - 2;
+        final int cutH = source.getHeight() - 2;
+        final int trimmedWidth = target.getWidth() - 2;
+        final int trimmedHeight = target.getHeight() - 2;
+        final int[] targetData = ArgbRasters.getData(target);
+        final int targetStride = ArgbRasters.getStride(target);
+        final int[] edge = new int[Math.max(cutW, cutH)];
+
+        // left border
+        readEdge(source, 0, 1, cutH, true, edge);
+        scaleEdge(edge, cutH, targetData, ArgbRasters.getOffset(target, 0, 1), targetStride, trimmedHeight);
+
+        // right border
+        readEdge(source, cutW + 1, 1, cutH, true, edge);
+        scaleEdge(edge,
+                  cutH,
+                  targetData,
+                  ArgbRasters.getOffset(target, trimmedWidth + 1, 1),
+                  targetStride,
+                  trimmedHeight);
+
+        // top border
+        readEdge(source, 1, 0, cutW, false, edge);
+        scaleEdge(edge, cutW, targetData, ArgbRasters.getOffset(target, 1, 0), 1, trimmedWidth);
+
+        // bottom border
+        readEdge(source, 1, cutH + 1, cutW, false, edge);
+        scaleEdge(edge, cutW, targetData, ArgbRasters.getOffset(target, 1, trimmedHeight + 1), 1, trimmedWidth);
+    }
+
+    private static void readEdge(BufferedImage source, int x, int y, int length, boolean vertical, int[] edge) {
+        if (source.getType() != BufferedImage.TYPE_INT_ARGB) {
+            if (vertical) {
+                source.getRGB(x, y, 1, length, edge, 0, 1);
+            } else {
+                source.getRGB(x, y, length, 1, edge, 0, length);
+            }
+            return;
+        }
+        final int[] data = ArgbRasters.getData(source);
+        final int step = vertical ? ArgbRasters.getStride(source) : 1;
+        int index = ArgbRasters.getOffset(source, x, y);
+        for (int i = 0; i < length; i++) {
+            edge[i] = data[index];
+            index += step;
+        }
+    }
+
+    private static void scaleEdge(int[] edge,
+                                  int sourceLength,
+                                  int[] target,
+                                  int targetOffset,
+                                  int targetStep,
+                                  int targetLength) throws IOException {
+        for (int i = 0; i < sourceLength; i++) {
+            final int pixel = edge[i];
+            if ((ALPHA_MASK & pixel) != 0 && pixel != MARKER && pixel != LAYOUT_BOUNDS) {
+                throw new IOException("Invalid nine-patch border color " + Integer.toHexString(pixel));
+            }
+        }
+        if (targetLength > sourceLength) {
+            stretchRuns(edge, sourceLength, target, targetOffset, targetStep, targetLength);
+        } else {
+            samplePixels(edge, sourceLength, target, targetOffset, targetStep, targetLength);
+        }
+    }
+
+    /**
+     * Upscaling keeps every marker run connected. Layout bound markers are turned into regular markers.
+     * <p>
+     * This is deliberately not integer arithmetic: runs are mapped through the double precision spline the borders
+     * were always stretched with, so existing nine-patches keep their exact markers. Only the spline coefficients
+     * are computed per edge, nothing is allocated.
+     */
+    private static void stretchRuns(int[] edge,
+                                    int sourceLength,
+                                    int[] target,
+                                    int targetOffset,
+                                    int targetStep,
+                                    int targetLength) {
+        // The spline needs three points, the coefficients are unused for shorter borders
+        final boolean spline = sourceLength >= 3;
+        final double n = sourceLength - 1;
+        final double h = n - 1d;
+        final double c = getQuadraticCoefficient(n, h, targetLength);
+        final double b = getLinearCoefficient(h, c, targetLength);
+        final double d = getCubicCoefficient(h, c);
+        int start = -1;
+        for (int i = 0; i <= sourceLength; i++) {
+            final boolean marker = i < sourceLength && (ALPHA_MASK & edge[i]) != 0;
+            if (marker && start == -1) {
+                start = i;
+            } else if (!marker && start != -1) {
+                final int from;
+                final int to;
+                if (spline) {
+                    from = scaleRunPosition(b, c, d, start, targetLength);
+                    to = scaleRunPosition(b, c, d, i - 1, targetLength);
+                } else {
+                    from = scaleRunStart(start, sourceLength, targetLength);
+                    to = scaleRunEnd(i - 1, sourceLength, targetLength);
+                }
+                for (int j = from; j <= to; j++) {
+                    target[targetOffset + j * targetStep] = MARKER;
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Run positions are mapped through the natural cubic spline through (0, 0), (1, 1) and
+     * (sourceLength - 1, targetLength - 1), which the borders were always stretched with. The coefficients of its
+     * second segment are computed and evaluated in the same order of double operations as commons-math's
+     * SplineInterpolator and PolynomialFunction did, so every marker lands on the same pixels as before, including
+     * the positions where rounding puts a value just below a whole pixel.
+     */
+    static int scaleRunPosition(int position, int sourceLength, int targetLength) {
+        final double n = sourceLength - 1;
+        final double h = n - 1d;
+        final double c = getQuadraticCoefficient(n, h, targetLength);
+        return scaleRunPosition(getLinearCoefficient(h, c, targetLength),
+                                c,
+                                getCubicCoefficient(h, c),
+                                position,
+                                targetLength);
+    }
+
+    /**
+     * Evaluates the segment starting at position 1 with its linear, quadratic and cubic coefficients.
+     */
+    private static int scaleRunPosition(double b, double c, double d, int position, int targetLength) {
+        if (position == 0) {
+            return 0;
+        }
+        final double t = position - 1d;
+        double value = d;
+        value = t * value + c;
+        value = t * value + b;
+        value = t * value + 1d;
+        return Math.max(0, Math.min((int) value, targetLength - 1));
+    }
+
+    private static double getQuadraticCoefficient(double n, double h, int targetLength) {
+        final double m = targetLength - 1;
+        return 3d * (m - n) / h / (2d * n);
+    }
+
+    private static double getLinearCoefficient(double h, double c, int targetLength) {
+        final double m = targetLength - 1;
+        return (m - 1d) / h - h * (2d * c) / 3d;
+    }
+
+    private static double getCubicCoefficient(double h, double c) {
+        return -c / (3d * h);
+    }
+
+    /**
+     * Borders of one or two pixels, which the spline can't be built for, are stretched proportionally instead.
+     * Source pixel i covers [i, i + 1), so the edge between pixel k - 1 and k is mapped onto the nearest target edge
+     * k * targetLength / sourceLength.
+     */
+    static int scaleRunStart(int start, int sourceLength, int targetLength) {
+        return scaleEdgePosition(start, sourceLength, targetLength);
+    }
+
+    static int scaleRunEnd(int end, int sourceLength, int targetLength) {
+        return scaleEdgePosition(end + 1, sourceLength, targetLength) - 1;
+    }
+
+    private static int scaleEdgePosition(int position, int sourceLength, int targetLength) {
+        return (int) ((2L * position * targetLength + sourceLength) / (2L * sourceLength));
+    }
+
+    /**
+     * Downscaling maps each marker pixel to its nearest target position, keeping its color.
+     */
+    private static void samplePixels(int[] edge,
+                                     int sourceLength,
+                                     int[] target,
+                                     int targetOffset,
+                                     int targetStep,
+                                     int targetLength) {
+        final float ratio = (float) Math.max(targetLength - 1, 1) / (float) Math.max(sourceLength - 1, 1);
+        for (int i = 0; i < sourceLength; i++) {
+            if ((ALPHA_MASK & edge[i]) != 0) {
+                final int j = Math.min(Math.round(i * ratio), targetLength - 1);
+                target[targetOffset + j * targetStep] = edge[i];
+            }
+        }
+    }
+
+    private NinePatchBorders() {
+    }
+}
@@ -15,6 +15,8 @@ package de.mprengemann.intellij.plugin.androidicons.util;
 
 import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
 
+import java.util.Collection;
+
 public class RefactorUtils {
 
     private static final float FACTOR_LDPI = 0.75f;
@@ -28,6 +30,55 @@ public class RefactorUtils {
     private RefactorUtils() {
     }
 
+    /**
+     * Picks the bitmap resolution to scale from for the target: the least dense one which is still at least as dense
+     * as the target, so nothing is upscaled and no more pixels than needed are decoded. If all of them are less dense,
+     * the densest one is used.
+     *
+     * @return the source resolution, or null if the target is a vector or there is no bitmap resolution to choose from
+     */
+    public static Resolution getSourceResolution(Resolution target, Collection<Resolution> resolutions) {
+        if (target == Resolution.ANYDPI) {
+            return null;
+        }
+        final float targetFactor = getFactor(target);
+        Resolution smallestLarger = null;
+        Resolution largest = null;
+        for (Resolution resolution : resolutions) {
+            if (resolution == Resolution.ANYDPI) {
+                continue;
+            }
+            final float factor = getFactor(resolution);
+            if (factor >= targetFactor && (smallestLarger == null || factor < getFactor(smallestLarger))) {
+                smallestLarger = resolution;
+            }
+            if (largest == null || factor > getFactor(largest)) {
+                largest = resolution;
+            }
+        }
+        return smallestLarger != null ? smallestLarger : largest;
+    }
+
+    private static float getFactor(Resolution resolution) {
+        switch (resolution) {
+            case LDPI:
+                return FACTOR_LDPI;
+            case MDPI:
+                return FACTOR_MDPI;
+            case HDPI:
+                return FACTOR_HDPI;
+            case XHDPI:
+                return FACTOR_XHDPI;
+            case XXHDPI:
+                return FACTOR_XXHDPI;
+            case XXXHDPI:
+                return FACTOR_XXXHDPI;
+            case TVDPI:
+                return FACTOR_TVDPI;
+        }
+        throw new IllegalArgumentException();
+    }
+
     public static float getScaleFactor(Resolution target, Resolution baseLine) {
         switch (baseLine) {
             case MDPI:
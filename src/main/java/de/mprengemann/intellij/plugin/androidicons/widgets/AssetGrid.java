@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.widgets;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.ui.components.JBList;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IIconPackController;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackObserver;
+import de.mprengemann.intellij.plugin.androidicons.controllers.icons.IconPackSearchIndex;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageAsset;
+import org.apache.commons.lang.StringUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grid of the assets of one or more icon packs. Cells have a fixed size, so the list never measures more than the
+ * visible cells, and thumbnails are only requested for cells which are painted. They are loaded on a background
+ * thread, the most recently requested first, so scrolling through thousands of assets doesn't block the UI. Assets
+ * without a thumbnail, e.g. while the atlas is still being built, show their name and are requested again on the
+ * next paint.
+ */
+public class AssetGrid extends JBList implements Disposable {
+
+    private static final int CELL_SIZE = 48;
+    private static final int MAX_PENDING = 256;
+
+    private final AssetListModel model = new AssetListModel();
+    private final Map<String, IIconPackController> iconPackControllers = new HashMap<String, IIconPackController>();
+    private final Map<ImageAsset, Icon> thumbnails = new IdentityHashMap<ImageAsset, Icon>();
+    private final Set<ImageAsset> pending = Collections.newSetFromMap(new ConcurrentHashMap<ImageAsset, Boolean>());
+    private final LinkedBlockingDeque<ImageAsset> queue = new LinkedBlockingDeque<ImageAsset>();
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final AtomicInteger thumbnailGeneration = new AtomicInteger();
+    private final ExecutorService loader =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("ADI thumbnail loader", 1);
+    private final Runnable loadThumbnails = new Runnable() {
+        @Override
+        public void run() {
+            ImageAsset asset;
+            while ((asset = queue.pollFirst()) != null) {
+                final ImageAsset loadedAsset = asset;
+                final int generation = thumbnailGeneration.get();
+                final IIconPackController controller = iconPackControllers.get(asset.getIconPack());
+                final Icon thumbnail = controller != null ? controller.getThumbnail(asset) : null;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        pending.remove(loadedAsset);
+                        // Missing or outdated thumbnails aren't cached, the next paint asks again
+                        if (thumbnail != null && generation == thumbnailGeneration.get()) {
+                            thumbnails.put(loadedAsset, thumbnail);
+                            repaint();
+                        }
+                    }
+                });
+            }
+            loading.set(false);
+            if (!queue.isEmpty()) {
+                startLoading();
+            }
+        }
+    };
+    private final IconPackObserver iconPackObserver = new IconPackObserver() {
+        @Override
+        public void thumbnailsReloaded() {
+            thumbnailGeneration.incrementAndGet();
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    thumbnails.clear();
+                    repaint();
+                }
+            });
+        }
+    };
+
+    private volatile boolean disposed;
+    private List<ImageAsset> assets = Collections.emptyList();
+    private String query = "";
+    private List<ImageAsset> searchResult = Collections.emptyList();
+
+    public AssetGrid() {
+        super();
+        //noinspection unchecked
+        setModel(model);
+        setCellRenderer(new AssetRenderer());
+        setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        setVisibleRowCount(-1);
+        setFixedCellWidth(CELL_SIZE);
+        setFixedCellHeight(CELL_SIZE);
+        setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    }
+
+    public void setIconPackControllers(List<? extends IIconPackController> controllers) {
+        removeIconPackObserver();
+        iconPackControllers.clear();
+        for (IIconPackController controller : controllers) {
+            iconPackControllers.put(controller.getId(), controller);
+            controller.addObserver(iconPackObserver);
+        }
+    }
+
+    /**
+     * Sets the assets shown while no query is entered. Setting the same list again keeps the grid untouched.
+     */
+    public void setAssets(List<ImageAsset> assets) {
+        this.assets = assets != null ? assets : Collections.<ImageAsset>emptyList();
+        if (StringUtils.isBlank(query)) {
+            model.setAssets(this.assets);
+        }
+    }
+
+    /**
+     * Shows the assets of all icon packs matching the query instead, best match first.
+     */
+    public void setQuery(String query) {
+        query = query != null ? query : "";
+        if (query.equals(this.query)) {
+            return;
+        }
+        this.query = query;
+        if (StringUtils.isBlank(query)) {
+            searchResult = Collections.emptyList();
+            model.setAssets(assets);
+            return;
+        }
+        final List<List<ImageAsset>> results = new ArrayList<List<ImageAsset>>(iconPackControllers.size());
+        for (IIconPackController controller : iconPackControllers.values()) {
+            results.add(controller.search(query));
+        }
+        searchResult = IconPackSearchIndex.merge(query, results);
+        model.setAssets(searchResult);
+        if (!searchResult.isEmpty()) {
+            ensureIndexIsVisible(0);
+        }
+    }
+
+    /**
+     * @return the asset selected last
+     */
+    public ImageAsset getSelectedAsset() {
+        final int index = getLeadSelectionIndex();
+        if (index >= 0 && index < model.getSize() && isSelectedIndex(index)) {
+            return model.getElementAt(index);
+        }
+        return (ImageAsset) getSelectedValue();
+    }
+
+    public List<ImageAsset> getSelectedAssets() {
+        final List<ImageAsset> selectedAssets = new ArrayList<ImageAsset>();
+        for (int index : getSelectedIndices()) {
+            selectedAssets.add(model.getElementAt(index));
+        }
+        return selectedAssets;
+    }
+
+    /**
+     * Selects the asset unless it's already part of the selection, so a multi-selection survives model updates.
+     */
+    public void setSelectedAsset(ImageAsset asset) {
+        final int index = model.indexOf(asset);
+        if (index < 0) {
+            clearSelection();
+            return;
+        }
+        if (!isSelectedIndex(index)) {
+            setSelectedIndex(index);
+        }
+        ensureIndexIsVisible(index);
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        queue.clear();
+        removeIconPackObserver();
+    }
+
+    private void removeIconPackObserver() {
+        for (IIconPackController controller : iconPackControllers.values()) {
+            controller.removeObserver(iconPackObserver);
+        }
+    }
+
+    private Icon getThumbnail(ImageAsset asset) {
+        final Icon thumbnail = thumbnails.get(asset);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+        if (pending.add(asset)) {
+            queue.offerFirst(asset);
+            // Cells scrolled out of view long ago are requested again once they're painted
+            while (queue.size() > MAX_PENDING) {
+                final ImageAsset dropped = queue.pollLast();
+                if (dropped != null) {
+                    pending.remove(dropped);
+                }
+            }
+            startLoading();
+        }
+        return null;
+    }
+
+    private void startLoading() {
+        if (!disposed && loading.compareAndSet(false, true)) {
+            loader.execute(loadThumbnails);
+        }
+    }
+
+    private static class AssetListModel extends AbstractListModel {
+        private List<ImageAsset> assets = Collections.emptyList();
+
+        private void setAssets(List<ImageAsset> assets) {
+            if (assets == this.assets) {
+                return;
+            }
+            final int oldSize = this.assets.size();
+            this.assets = assets;
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (!assets.isEmpty()) {
+                fireIntervalAdded(this, 0, assets.size() - 1);
+            }
+        }
+
+        private int indexOf(ImageAsset asset) {
+            return asset != null ? assets.indexOf(asset) : -1;
+        }
+
+        @Override
+        public int getSize() {
+            return assets.size();
+        }
+
+        @Override
+        public ImageAsset getElementAt(int index) {
+            return assets.get(index);
+        }
+    }
+
+    private class AssetRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList list,
+                                                      Object value,
+                                                      int index,
+                                                      boolean isSelected,
+                                                      boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, null, index, isSelected, cellHasFocus);
+            final ImageAsset asset = (ImageAsset) value;
+            setHorizontalAlignment(SwingConstants.CENTER);
+            final Icon thumbnail = asset != null ? getThumbnail(asset) : null;
+            setIcon(thumbnail);
+            setText(thumbnail == null && asset != null ? asset.getName() : null);
+            setToolTipText(asset != null ? asset.getName() : null);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.model;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import de.mprengemann.intellij.plugin.androidicons.resources.IconPackIndex;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ImageAssetPoolTest {
+
+    /**
+     * ImageAsset("ic_add", "material_icons", "content", [MDPI, HDPI, XHDPI, XXHDPI, XXXHDPI], [black, white],
+     * [18dp, 24dp]) serialized by the original class, the way SettingsController stores the selected asset.
+     */
+    private static final String ORIGINAL_SERIALIZED_ASSET =
+        "rO0ABXNyADxkZS5tcHJlbmdlbWFubi5pbnRlbGxpai5wbHVnaW4uYW5kcm9pZGljb25zLm1vZGVsLkltYWdlQXNzZXQl990GqIfF" +
+        "7gIABkwACGNhdGVnb3J5dAASTGphdmEvbGFuZy9TdHJpbmc7TAAGY29sb3JzdAAQTGphdmEvdXRpbC9MaXN0O0wABG5hbWVxAH4A" +
+        "AUwABHBhY2txAH4AAUwAC3Jlc29sdXRpb25zcQB+AAJMAAVzaXplc3EAfgACeHB0AAdjb250ZW50c3IAE2phdmEudXRpbC5BcnJh" +
+        "eUxpc3R4gdIdmcdhnQMAAUkABHNpemV4cAAAAAJ3BAAAAAJ0AAVibGFja3QABXdoaXRleHQABmljX2FkZHQADm1hdGVyaWFsX2lj" +
+        "b25zc3EAfgAFAAAABXcEAAAABX5yADxkZS5tcHJlbmdlbWFubi5pbnRlbGxpai5wbHVnaW4uYW5kcm9pZGljb25zLm1vZGVsLlJl" +
+        "c29sdXRpb24AAAAAAAAAABIAAHhyAA5qYXZhLmxhbmcuRW51bQAAAAAAAAAAEgAAeHB0AARNRFBJfnEAfgAMdAAESERQSX5xAH4A" +
+        "DHQABVhIRFBJfnEAfgAMdAAGWFhIRFBJfnEAfgAMdAAHWFhYSERQSXhzcQB+AAUAAAACdwQAAAACdAAEMThkcHQABDI0ZHB4";
+
+    @Test
+    public void readsAssetsSerializedByOriginalClass() throws Exception {
+        final byte[] bytes = Base64.getDecoder().decode(ORIGINAL_SERIALIZED_ASSET);
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        final ImageAsset asset;
+        try {
+            asset = (ImageAsset) in.readObject();
+        } finally {
+            in.close();
+        }
+        final ImageAsset shared = new ImageAsset("ic_add",
+                                                 "material_icons",
+                                                 "content",
+                                                 Arrays.asList(Resolution.XXXHDPI,
+                                                               Resolution.XXHDPI,
+                                                               Resolution.XHDPI,
+                                                               Resolution.HDPI,
+                                                               Resolution.MDPI),
+                                                 Arrays.asList("black", "white"),
+                                                 Arrays.asList("18dp", "24dp"));
+        assertEquals("ic_add", asset.getName());
+        assertEquals("content", asset.getCategory());
+        assertSame(shared.getResolutions(), asset.getResolutions());
+        assertSame(shared.getColors(), asset.getColors());
+        assertSame(shared.getSizes(), asset.getSizes());
+    }
+
+    /**
+     * Compares the live heap histograms of the bundled packs as Gson creates them, which is how they were kept
+     * before the pool, and as {@link IconPackIndex#readJson} creates them.
+     */
+    @Test
+    public void sharesValuesOfBundledPacks() throws Exception {
+        assumeTrue(getHistogramBean() != null);
+        final InputStream stream = getClass().getResourceAsStream("/assets/" + IconPackIndex.CONTENT_JSON);
+        final String json;
+        try {
+            json = IOUtils.toString(stream, "UTF-8");
+        } finally {
+            stream.close();
+        }
+
+        final Map<String, long[]> empty = getHistogram();
+        List<IconPack> unshared = new GsonBuilder()
+            .registerTypeAdapter(Resolution.class, new Resolution.Deserializer())
+            .create()
+            .fromJson(json, new TypeToken<ArrayList<IconPack>>() {}.getType());
+        final Map<String, long[]> withUnshared = getHistogram();
+        final long before = report("Before", empty, withUnshared);
+        assertTrue(unshared.size() > 0);
+        unshared = null;
+
+        final Map<String, long[]> released = getHistogram();
+        final List<IconPack> shared = IconPackIndex.readJson(new StringReader(json));
+        final Map<String, long[]> withShared = getHistogram();
+        final long after = report("After", released, withShared);
+        assertTrue(shared.size() > 0);
+
+        final Set<Object> colorLists = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final Set<List<String>> distinctColors = new HashSet<List<String>>();
+        for (IconPack iconPack : shared) {
+            for (ImageAsset asset : iconPack.getAssets()) {
+                colorLists.add(asset.getColors());
+                distinctColors.add(asset.getColors());
+            }
+        }
+        assertEquals("Every color combination is held once", distinctColors.size(), colorLists.size());
+        assertTrue(String.format("Retained %d bytes before, %d after", before, after), after * 4 < before);
+    }
+
+    private static long report(String title, Map<String, long[]> from, Map<String, long[]> to) {
+        final List<Map.Entry<String, long[]>> growth = new ArrayList<Map.Entry<String, long[]>>();
+        long total = 0;
+        for (Map.Entry<String, long[]> entry : to.entrySet()) {
+            final long[] previous = from.get(entry.getKey());
+            final long count = entry.getValue()[0] - (previous != null ? previous[0] : 0);
+            final long bytes = entry.getValue()[1] - (previous != null ? previous[1] : 0);
+            if (bytes > 0) {
+                growth.add(new AbstractMap.SimpleEntry<String, long[]>(entry.getKey(), new long[] {count, bytes}));
+                total += bytes;
+            }
+        }
+        Collections.sort(growth, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> o1, Map.Entry<String, long[]> o2) {
+                return o1.getValue()[1] > o2.getValue()[1] ? -1 : (o1.getValue()[1] == o2.getValue()[1] ? 0 : 1);
+            }
+        });
+        System.out.println(String.format("%s: %,d bytes retained", title, total));
+        for (Map.Entry<String, long[]> entry : growth.subList(0, Math.min(6, growth.size()))) {
+            System.out.println(String.format("  %,10d bytes %,8d x %s",
+                                             entry.getValue()[1],
+                                             entry.getValue()[0],
+                                             entry.getKey()));
+        }
+        return total;
+    }
+
+    private static ObjectName getHistogramBean() throws Exception {
+        final ObjectName name = new ObjectName("com.sun.management:type=DiagnosticCommand");
+        return ManagementFactory.getPlatformMBeanServer().isRegistered(name) ? name : null;
+    }
+
+    /**
+     * Live objects by class after a full GC, the same as jcmd GC.class_histogram.
+     */
+    private static Map<String, long[]> getHistogram() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final String histogram = (String) server.invoke(getHistogramBean(),
+                                                        "gcClassHistogram",
+                                                        new Object[] {null},
+                                                        new String[] {String[].class.getName()});
+        final Map<String, long[]> result = new HashMap<String, long[]>();
+        for (String line : histogram.split("\n")) {
+            final String[] columns = line.trim().split("\\s+");
+            if (columns.length >= 4 && columns[0].endsWith(":")) {
+                result.put(columns[3], new long[] {Long.parseLong(columns[1]), Long.parseLong(columns[2])});
+            }
+        }
+        return result;
+    }
+}
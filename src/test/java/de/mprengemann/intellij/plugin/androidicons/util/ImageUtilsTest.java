@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.util;
+
+import de.mprengemann.intellij.plugin.androidicons.images.ResizeAlgorithm;
+import de.mprengemann.intellij.plugin.androidicons.model.ImageInformation;
+import de.mprengemann.intellij.plugin.androidicons.model.Resolution;
+import org.imgscalr.Scalr;
+import org.junit.Test;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImageUtilsTest {
+
+    private static final Resolution[] RESOLUTIONS = {
+        Resolution.XXXHDPI, Resolution.XXHDPI, Resolution.XHDPI, Resolution.HDPI, Resolution.MDPI, Resolution.LDPI
+    };
+    private static final float[] FACTORS = {1f, 0.75f, 0.5f, 0.375f, 0.25f, 0.1875f};
+    private static final double MAX_MEAN_ERROR = 8d;
+
+    /**
+     * Derives the density set of a master through the cascade and straight from the master, and bounds the mean
+     * absolute channel error (of 255) between the two for every density. The noise of the master makes this about
+     * the worst case, BALANCED ends up at 6.9 for LDPI and QUALITY at 4.3.
+     */
+    @Test
+    public void cascadeStaysCloseToDirectResize() throws Exception {
+        final BufferedImage master = createMaster(1536, 1280);
+        for (Scalr.Method method : new Scalr.Method[] {Scalr.Method.BALANCED, Scalr.Method.QUALITY}) {
+            final List<ImageInformation> chain = new ArrayList<ImageInformation>();
+            for (int i = 0; i < FACTORS.length; i++) {
+                chain.add(createInformation(ResizeAlgorithm.CASCADE, method, RESOLUTIONS[i], FACTORS[i]));
+            }
+            final List<BufferedImage> cascaded = ImageUtils.resizeCascade(master, chain);
+
+            for (int i = 0; i < FACTORS.length; i++) {
+                final BufferedImage direct = ImageUtils.resizeNormalImage(
+                    master,
+                    createInformation(ResizeAlgorithm.SCALR, method, RESOLUTIONS[i], FACTORS[i]));
+                final BufferedImage derived = cascaded.get(i);
+                final String description = String.format("%s %s", method, RESOLUTIONS[i]);
+                assertEquals(description, direct.getWidth(), derived.getWidth());
+                assertEquals(description, direct.getHeight(), derived.getHeight());
+
+                final double error = getMeanError(direct, derived);
+                assertTrue(String.format("%s mean error %.2f", description, error), error <= MAX_MEAN_ERROR);
+            }
+        }
+    }
+
+    private static ImageInformation createInformation(ResizeAlgorithm algorithm,
+                                                      Scalr.Method method,
+                                                      Resolution resolution,
+                                                      float factor) {
+        return ImageInformation.newBuilder()
+                               .setExportName("master")
+                               .setExportPath("res")
+                               .setTargetResolution(resolution)
+                               .setFactor(factor)
+                               .setAlgorithm(algorithm)
+                               .setMethod(method)
+                               .build();
+    }
+
+    /**
+     * Gradients, hard edges, thin lines and noise, so both smooth areas and high frequencies are covered.
+     */
+    private static BufferedImage createMaster(int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setPaint(new GradientPaint(0, 0, new Color(0xff3f51b5), width, height, new Color(0xffffc107)));
+        graphics.fillRect(0, 0, width, height);
+        final Random random = new Random(3);
+        for (int i = 0; i < 40; i++) {
+            graphics.setColor(new Color(random.nextInt(), true));
+            final int size = 40 + random.nextInt(300);
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        graphics.setColor(Color.BLACK);
+        for (int i = 0; i < 60; i++) {
+            graphics.setStroke(new BasicStroke(1 + random.nextInt(6)));
+            graphics.drawLine(random.nextInt(width),
+                              random.nextInt(height),
+                              random.nextInt(width),
+                              random.nextInt(height));
+        }
+        graphics.dispose();
+        for (int i = 0; i < width * height / 50; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), 0xff000000 | random.nextInt(0x1000000));
+        }
+        return image;
+    }
+
+    /**
+     * @return the mean absolute difference over all channels
+     */
+    private static double getMeanError(BufferedImage first, BufferedImage second) {
+        final int width = first.getWidth();
+        final int height = first.getHeight();
+        final int[] firstPixels = first.getRGB(0, 0, width, height, null, 0, width);
+        final int[] secondPixels = second.getRGB(0, 0, width, height, null, 0, width);
+        long sum = 0;
+        for (int i = 0; i < firstPixels.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                sum += Math.abs(((firstPixels[i] >>> shift) & 0xff) - ((secondPixels[i] >>> shift) & 0xff));
+            }
+        }
+        return (double) sum / (firstPixels.length * 4d);
+    }
+}
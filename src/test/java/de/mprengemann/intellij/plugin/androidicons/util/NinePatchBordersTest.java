@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Marc Prengemann
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * 			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.mprengemann.intellij.plugin.androidicons.util;
+
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the border scaling with the implementation it replaced, which stretched the markers through a
+ * commons-math spline and sampled them with float ratios when shrinking.
+ */
+public class NinePatchBordersTest {
+
+    private static final int MARKER = 0xff000000;
+    private static final int LAYOUT_BOUNDS = 0xffff0000;
+    private static final float[] FACTORS = {0.25f, 0.5f, 0.75f, 1.25f, 1.5f, 2f, 3f, 4f};
+
+    @Test
+    public void runPositionsMatchLegacySpline() {
+        for (int sourceLength = 3; sourceLength <= 128; sourceLength++) {
+            for (int targetLength = sourceLength + 1; targetLength <= 4 * sourceLength; targetLength++) {
+                final PolynomialSplineFunction legacy = createLegacySpline(sourceLength, targetLength);
+                for (int position = 0; position < sourceLength; position++) {
+                    assertEquals(String.format("%d -> %d, position %d", sourceLength, targetLength, position),
+                                 (int) legacy.value(position),
+                                 NinePatchBorders.scaleRunPosition(position, sourceLength, targetLength));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bordersMatchLegacyImplementation() throws Exception {
+        final Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            final BufferedImage source = createNinePatch(random, 3 + random.nextInt(120), 3 + random.nextInt(120));
+            final int cutW = source.getWidth() - 2;
+            final int cutH = source.getHeight() - 2;
+            for (float factor : FACTORS) {
+                final int trimmedWidth = Math.max(1, (int) (cutW * factor));
+                final int trimmedHeight = Math.max(1, (int) (cutH * factor));
+                final BufferedImage actual = NinePatchBorders.createBorderImage(source, trimmedWidth, trimmedHeight);
+                final BufferedImage expected = createLegacyBorderImage(source, trimmedWidth, trimmedHeight);
+                assertArrayEquals(String.format("%dx%d scaled by %s", cutW, cutH, factor),
+                                  getPixels(expected),
+                                  getPixels(actual));
+            }
+        }
+    }
+
+    private static BufferedImage createNinePatch(Random random, int cutW, int cutH) {
+        final BufferedImage image = new BufferedImage(cutW + 2, cutH + 2, BufferedImage.TYPE_INT_ARGB);
+        fillEdge(random, image, 0, true, cutH, false);
+        fillEdge(random, image, 0, false, cutW, false);
+        fillEdge(random, image, cutW + 1, true, cutH, true);
+        fillEdge(random, image, cutH + 1, false, cutW, true);
+        return image;
+    }
+
+    private static void fillEdge(Random random, BufferedImage image, int line, boolean vertical, int length,
+                                 boolean layoutBounds) {
+        final int runs = 1 + random.nextInt(3);
+        for (int run = 0; run < runs; run++) {
+            final int start = random.nextInt(length);
+            final int end = Math.min(length - 1, start + random.nextInt(Math.max(1, length / 2)));
+            final int color = layoutBounds && random.nextBoolean() ? LAYOUT_BOUNDS : MARKER;
+            for (int i = start; i <= end; i++) {
+                if (vertical) {
+                    image.setRGB(line, i + 1, color);
+                } else {
+                    image.setRGB(i + 1, line, color);
+                }
+            }
+        }
+    }
+
+    private static BufferedImage createLegacyBorderImage(BufferedImage source, int trimmedWidth, int trimmedHeight) {
+        final int cutW = source.getWidth() - 2;
+        final int cutH = source.getHeight() - 2;
+        final BufferedImage image = new BufferedImage(trimmedWidth + 2, trimmedHeight + 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 1, 1, trimmedHeight,
+                     scaleLegacyEdge(source.getRGB(0, 1, 1, cutH, null, 0, 1), trimmedHeight), 0, 1);
+        image.setRGB(trimmedWidth + 1, 1, 1, trimmedHeight,
+                     scaleLegacyEdge(source.getRGB(cutW + 1, 1, 1, cutH, null, 0, 1), trimmedHeight), 0, 1);
+        image.setRGB(1, 0, trimmedWidth, 1,
+                     scaleLegacyEdge(source.getRGB(1, 0, cutW, 1, null, 0, cutW), trimmedWidth), 0, trimmedWidth);
+        image.setRGB(1, trimmedHeight + 1, trimmedWidth, 1,
+                     scaleLegacyEdge(source.getRGB(1, cutH + 1, cutW, 1, null, 0, cutW), trimmedWidth),
+                     0,
+                     trimmedWidth);
+        return image;
+    }
+
+    private static int[] scaleLegacyEdge(int[] edge, int targetLength) {
+        final int[] scaled = new int[targetLength];
+        if (targetLength > edge.length) {
+            final PolynomialSplineFunction function = createLegacySpline(edge.length, targetLength);
+            int start = -1;
+            for (int i = 0; i <= edge.length; i++) {
+                final boolean marker = i < edge.length && (0xff000000 & edge[i]) != 0;
+                if (marker && start == -1) {
+                    start = i;
+                } else if (!marker && start != -1) {
+                    for (int j = (int) function.value(start); j <= (int) function.value(i - 1); j++) {
+                        scaled[j] = MARKER;
+                    }
+                    start = -1;
+                }
+            }
+            return scaled;
+        }
+        final float ratio = (float) Math.max(targetLength - 1, 1) / (float) Math.max(edge.length - 1, 1);
+        for (int i = 0; i < edge.length; i++) {
+            if ((0xff000000 & edge[i]) != 0) {
+                scaled[Math.min(Math.round(i * ratio), targetLength - 1)] = edge[i];
+            }
+        }
+        return scaled;
+    }
+
+    private static PolynomialSplineFunction createLegacySpline(int sourceLength, int targetLength) {
+        return new SplineInterpolator().interpolate(new double[] {0f, 1f, sourceLength - 1},
+                                                    new double[] {0f, 1f, targetLength - 1});
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}